@@ -0,0 +1,188 @@
+/**
+
+ * File: ActiveRenderer.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import javax.swing.JComponent;
+import javax.swing.JFrame;
+import javax.swing.JRootPane;
+import javax.swing.RepaintManager;
+import javax.swing.SwingUtilities;
+import java.awt.BufferCapabilities;
+import java.awt.DisplayMode;
+import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Toolkit;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.awt.image.BufferStrategy;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Draws a frame from a dedicated thread into a page-flipped or blitted
+ * BufferStrategy, once per display refresh, and advances a {@link PieceAnimator}
+ * before every frame. Swing's own repaints of the frame are dropped while it
+ * runs, since every frame repaints the whole window anyway.
+ *
+ * The thread only keeps time; advancing the animations and painting the Swing
+ * components happen on the event dispatch thread, which the thread waits for.
+ * Frames are skipped while no piece is moving and Swing hasn't asked for a
+ * repaint, except for one every IDLE_REFRESH_NANOS: the OS's own paint
+ * requests are ignored while the renderer runs, so that refresh is what
+ * repairs the window after something was dragged across it. An idle window
+ * is drawn four times a second instead of once per refresh. A frame that is
+ * drawn still allocates: invokeAndWait creates an InvocationEvent and a lock
+ * for every call, and Swing allocates while painting.
+ */
+class ActiveRenderer implements Runnable {
+    private static final int DEFAULT_REFRESH_RATE = 60;
+    private static final long IDLE_REFRESH_NANOS = 250_000_000L;
+
+    private final JFrame frame;
+    private final PieceAnimator animator;
+    private final Runnable renderFrame = this::renderFrame;
+    private final WindowAdapter exposed = new WindowAdapter() {
+        @Override
+        public void windowStateChanged(WindowEvent e) {
+            dirty = true; // Restored or maximised; the OS repaint is ignored
+        }
+
+        @Override
+        public void windowActivated(WindowEvent e) {
+            dirty = true;
+        }
+    };
+    private BufferStrategy strategy;
+    private RepaintManager previousManager;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile boolean dirty = true; // Swing asked for a repaint since the last frame
+    private long lastFrame;
+
+    public ActiveRenderer(JFrame frame, PieceAnimator animator) {
+        this.frame = frame;
+        this.animator = animator;
+    }
+
+    /** True if the frame's screen has an accelerated back buffer to render into. */
+    public static boolean isSupported(JFrame frame) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return false;
+        }
+        GraphicsConfiguration config = frame.getGraphicsConfiguration();
+        BufferCapabilities capabilities = config.getBufferCapabilities();
+        return capabilities.getBackBufferCapabilities().isAccelerated();
+    }
+
+    /** Starts rendering; the frame must already be visible. */
+    public void start() {
+        frame.setIgnoreRepaint(true);
+        frame.createBufferStrategy(2);
+        strategy = frame.getBufferStrategy();
+
+        previousManager = RepaintManager.currentManager(frame);
+        RepaintManager.setCurrentManager(new RepaintManager() {
+            @Override
+            public void addDirtyRegion(JComponent c, int x, int y, int w, int h) {
+                if (running && SwingUtilities.getWindowAncestor(c) == frame) {
+                    dirty = true; // The next frame paints the whole window
+                    return;
+                }
+                super.addDirtyRegion(c, x, y, w, h);
+            }
+        });
+
+        frame.addWindowListener(exposed);
+        frame.addWindowStateListener(exposed);
+        running = true;
+        dirty = true;
+        lastFrame = System.nanoTime();
+        thread = new Thread(this, "active-renderer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stops rendering and hands painting back to Swing. Call on the EDT. */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        frame.removeWindowListener(exposed);
+        frame.removeWindowStateListener(exposed);
+        RepaintManager.setCurrentManager(previousManager);
+        frame.setIgnoreRepaint(false);
+        if (strategy != null) {
+            strategy.dispose();
+        }
+        frame.repaint();
+    }
+
+    @Override
+    public void run() {
+        long frameNanos = 1_000_000_000L / refreshRate();
+        long nextFrame = System.nanoTime();
+        long lastDrawn = nextFrame;
+        while (running) {
+            if (dirty || !animator.isIdle() || nextFrame - lastDrawn >= IDLE_REFRESH_NANOS) {
+                lastDrawn = nextFrame;
+                try {
+                    SwingUtilities.invokeAndWait(renderFrame);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (InvocationTargetException e) {
+                    e.getCause().printStackTrace();
+                }
+            } else {
+                lastFrame = System.nanoTime(); // Don't replay the idle time when the next animation starts
+            }
+            nextFrame += frameNanos;
+            long now = System.nanoTime();
+            if (now - nextFrame > frameNanos) {
+                nextFrame = now; // Fell behind; don't try to catch up with a burst of frames
+            }
+            LockSupport.parkNanos(nextFrame - now);
+        }
+    }
+
+    private void renderFrame() {
+        if (!running || !frame.isDisplayable()) {
+            return;
+        }
+        long now = System.nanoTime();
+        animator.advance(now - lastFrame);
+        lastFrame = now;
+        // After moving the pieces, whose repaints this frame covers, but before
+        // painting, so a repaint asked for meanwhile gets its own frame
+        dirty = false;
+
+        JRootPane root = frame.getRootPane();
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                try {
+                    g.translate(root.getX(), root.getY());
+                    root.paint(g);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    private int refreshRate() {
+        DisplayMode mode = frame.getGraphicsConfiguration().getDevice().getDisplayMode();
+        int rate = mode.getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_REFRESH_RATE : rate;
+    }
+}
@@ -0,0 +1,361 @@
+/**
+
+ * File: AssetPack.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A pre-decoded copy of everything under /images/ and /sounds/: images as
+ * packed int pixels ready to copy into a BufferedImage, sounds as raw PCM.
+ * The pack is memory-mapped, so nothing is decompressed at startup.
+ *
+ * Every entry records the size and CRC-32 of the file it was decoded from.
+ * The first time an entry is read, the loose resource is hashed (much cheaper
+ * than decoding it) and an entry whose source has changed since is skipped,
+ * so the caller loads the loose file instead. If the loose file isn't there,
+ * the entry is used as it is.
+ *
+ * Build it with: java AssetPack [resourceRoot] [output]
+ *
+ * Layout (pixel data in native byte order, everything else big endian):
+ *   int magic, int version, byte pixelOrder (0 big endian, 1 little endian),
+ *   int entryCount
+ *   per entry: UTF name, byte kind, long offset, int length,
+ *     long sourceSize, int sourceCrc, then
+ *     image: int width, int height, int imageType
+ *     sound: float sampleRate, int sampleBits, int channels, boolean bigEndian
+ *   entry data, each aligned to 8 bytes
+ *
+ * The header and every entry are checked against the size of the file when it
+ * is opened, so a truncated or corrupt pack is rejected as a whole and the
+ * game falls back to the loose resources.
+ */
+class AssetPack {
+    static final String DEFAULT_FILE = "assets.pack";
+    private static final int MAGIC = 0x505A504B; // "PZPK"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 13;
+    private static final byte IMAGE = 0;
+    private static final byte SOUND = 1;
+
+    private static AssetPack shared;
+    private static boolean opened;
+
+    private final MappedByteBuffer data;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private AssetPack(MappedByteBuffer data) throws IOException {
+        this.data = data;
+        ByteBuffer header = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not an asset pack of version " + VERSION);
+            }
+            if (header.get() != pixelOrder()) {
+                throw new IOException("Built on a machine with the other byte order");
+            }
+            int count = header.getInt();
+            if (count < 0) {
+                throw new IOException("Corrupt entry count " + count);
+            }
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[header.getShort() & 0xFFFF];
+                header.get(name);
+                Entry entry = new Entry();
+                entry.kind = header.get();
+                entry.offset = header.getLong();
+                entry.length = header.getInt();
+                entry.sourceSize = header.getLong();
+                entry.sourceCrc = header.getInt();
+                if (entry.kind == IMAGE) {
+                    entry.width = header.getInt();
+                    entry.height = header.getInt();
+                    entry.imageType = header.getInt();
+                } else if (entry.kind == SOUND) {
+                    entry.format = new AudioFormat(header.getFloat(), header.getInt(), header.getInt(), true, header.get() != 0);
+                } else {
+                    throw new IOException("Unknown entry kind " + entry.kind);
+                }
+                String entryName = new String(name, StandardCharsets.UTF_8);
+                check(entryName, entry);
+                entries.put(entryName, entry);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated entry table");
+        }
+    }
+
+    // Rejects entries whose data doesn't lie inside the file or doesn't fit their size
+    private void check(String name, Entry entry) throws IOException {
+        if (entry.offset < 0 || entry.length < 0 || entry.offset + entry.length > data.capacity() || entry.sourceSize < 0) {
+            throw new IOException("Entry " + name + " lies outside the file");
+        }
+        if (entry.kind == IMAGE) {
+            boolean knownType = entry.imageType == BufferedImage.TYPE_INT_RGB || entry.imageType == BufferedImage.TYPE_INT_ARGB;
+            if (!knownType || entry.width <= 0 || entry.height <= 0 || (long) entry.width * entry.height * 4 > entry.length) {
+                throw new IOException("Entry " + name + " has a corrupt image header");
+            }
+        }
+    }
+
+    /**
+     * Returns the pack named by the puzzle.assets system property (or
+     * assets.pack in the working directory), or null if there is none and
+     * the loose resources should be used.
+     */
+    public static synchronized AssetPack shared() {
+        if (!opened) {
+            opened = true;
+            Path path = Paths.get(System.getProperty("puzzle.assets", DEFAULT_FILE));
+            if (path.toFile().isFile()) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    if (channel.size() > Integer.MAX_VALUE) {
+                        throw new IOException("Too large to map");
+                    }
+                    shared = new AssetPack(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                } catch (IOException e) {
+                    System.err.println("Ignoring asset pack " + path + ": " + e.getMessage());
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the image stored under a resource path such as /images/1.png, or
+     * null if the pack has none or the loose file has changed since.
+     */
+    public BufferedImage readImage(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null || entry.kind != IMAGE || !isFresh(name, entry)) {
+            return null;
+        }
+        BufferedImage image = new BufferedImage(entry.width, entry.height, entry.imageType);
+        IntBuffer pixels = slice(entry).order(ByteOrder.nativeOrder()).asIntBuffer();
+        // Copy row by row straight into the raster, which keeps the image managed
+        WritableRaster raster = image.getRaster();
+        int[] row = new int[entry.width];
+        for (int y = 0; y < entry.height; y++) {
+            pixels.get(row);
+            raster.setDataElements(0, y, entry.width, 1, row);
+        }
+        return image;
+    }
+
+    /**
+     * Returns an opened clip for a resource path such as /sounds/pop.au, or
+     * null if the pack has none, the loose file has changed since or its
+     * format can't be played.
+     */
+    public Clip readClip(String name) throws LineUnavailableException {
+        Entry entry = entries.get(name);
+        if (entry == null || entry.kind != SOUND || !isFresh(name, entry)) {
+            return null;
+        }
+        byte[] pcm = new byte[entry.length];
+        slice(entry).get(pcm);
+        Clip clip = AudioSystem.getClip();
+        try {
+            clip.open(entry.format, pcm, 0, pcm.length);
+        } catch (IllegalArgumentException e) {
+            // The stored format is one the mixer can't play; use the loose file
+            clip.close();
+            return null;
+        }
+        return clip;
+    }
+
+    // Checks an entry against its loose resource once, the first time it is read
+    private synchronized boolean isFresh(String name, Entry entry) {
+        if (!entry.checked) {
+            entry.checked = true;
+            try (InputStream in = AssetPack.class.getResourceAsStream(name)) {
+                if (in == null) {
+                    entry.fresh = true; // Shipped without the loose files
+                } else {
+                    CRC32 crc = new CRC32();
+                    long size = checksum(in, crc);
+                    entry.fresh = size == entry.sourceSize && (int) crc.getValue() == entry.sourceCrc;
+                }
+            } catch (IOException e) {
+                entry.fresh = false;
+            }
+            if (!entry.fresh) {
+                System.err.println("Asset pack entry " + name + " is out of date, using the loose file");
+            }
+        }
+        return entry.fresh;
+    }
+
+    private static long checksum(InputStream in, CRC32 crc) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long size = 0;
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            crc.update(buffer, 0, read);
+            size += read;
+        }
+        return size;
+    }
+
+    private static byte pixelOrder() {
+        return (byte) (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 0 : 1);
+    }
+
+    private ByteBuffer slice(Entry entry) {
+        ByteBuffer buffer = data.duplicate();
+        buffer.position((int) entry.offset);
+        buffer.limit((int) entry.offset + entry.length);
+        return buffer.slice();
+    }
+
+    /** Decodes every image and sound below resourceRoot and writes them to output. */
+    public static void build(File resourceRoot, File output) throws IOException, UnsupportedAudioFileException {
+        Map<String, byte[]> blobs = new LinkedHashMap<>();
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(table);
+
+        File[] images = new File(resourceRoot, "images").listFiles((dir, name) -> name.endsWith(".png"));
+        File[] sounds = new File(resourceRoot, "sounds").listFiles((dir, name) -> name.endsWith(".au"));
+        int count = (images == null ? 0 : images.length) + (sounds == null ? 0 : sounds.length);
+
+        if (images != null) {
+            for (File file : images) {
+                BufferedImage decoded = ImageIO.read(file);
+                int type = decoded.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+                int[] pixels = decoded.getRGB(0, 0, decoded.getWidth(), decoded.getHeight(), null, 0, decoded.getWidth());
+                ByteBuffer bytes = ByteBuffer.allocate(pixels.length * 4).order(ByteOrder.nativeOrder());
+                bytes.asIntBuffer().put(pixels);
+                blobs.put("/images/" + file.getName(), bytes.array());
+                header.writeUTF("/images/" + file.getName());
+                header.writeByte(IMAGE);
+                header.writeLong(0); // Offsets are filled in once the table size is known
+                header.writeInt(bytes.capacity());
+                writeSource(header, file);
+                header.writeInt(decoded.getWidth());
+                header.writeInt(decoded.getHeight());
+                header.writeInt(type);
+            }
+        }
+        if (sounds != null) {
+            for (File file : sounds) {
+                try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                    AudioInputStream source = AudioSystem.getAudioInputStream(in);
+                    AudioFormat format = source.getFormat();
+                    AudioFormat pcm = new AudioFormat(format.getSampleRate(), 16, format.getChannels(), true, format.isBigEndian());
+                    byte[] samples = AudioSystem.getAudioInputStream(pcm, source).readAllBytes();
+                    blobs.put("/sounds/" + file.getName(), samples);
+                    header.writeUTF("/sounds/" + file.getName());
+                    header.writeByte(SOUND);
+                    header.writeLong(0);
+                    header.writeInt(samples.length);
+                    writeSource(header, file);
+                    header.writeFloat(pcm.getSampleRate());
+                    header.writeInt(pcm.getSampleSizeInBits());
+                    header.writeInt(pcm.getChannels());
+                    header.writeBoolean(pcm.isBigEndian());
+                }
+            }
+        }
+        header.flush();
+
+        // Patch the data offsets into the entry table
+        ByteBuffer entryTable = ByteBuffer.wrap(table.toByteArray());
+        long offset = align(HEADER_SIZE + entryTable.capacity());
+        int position = 0;
+        for (byte[] blob : blobs.values()) {
+            position += 2 + (entryTable.getShort(position) & 0xFFFF);
+            byte kind = entryTable.get(position);
+            entryTable.putLong(position + 1, offset);
+            position += 1 + 8 + 4 + 8 + 4 + (kind == IMAGE ? 12 : 13);
+            offset = align(offset + blob.length);
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(pixelOrder());
+            out.writeInt(count);
+            out.write(entryTable.array());
+            long written = HEADER_SIZE + entryTable.capacity();
+            for (byte[] blob : blobs.values()) {
+                for (; written < align(written); written++) {
+                    out.writeByte(0);
+                }
+                out.write(blob);
+                written += blob.length;
+            }
+        }
+    }
+
+    // Records which file an entry was decoded from, see isFresh
+    private static void writeSource(DataOutputStream header, File file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new FileInputStream(file)) {
+            header.writeLong(checksum(in, crc));
+        }
+        header.writeInt((int) crc.getValue());
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File root = new File(args.length > 0 ? args[0] : ".");
+        File output = new File(args.length > 1 ? args[1] : DEFAULT_FILE);
+        build(root, output);
+        System.out.println("Wrote " + output + " (" + output.length() / 1024 + " KB)");
+    }
+
+    private static class Entry {
+        private byte kind;
+        private long offset;
+        private int length;
+        private long sourceSize;
+        private int sourceCrc;
+        private boolean checked;
+        private boolean fresh;
+        private int width;
+        private int height;
+        private int imageType;
+        private AudioFormat format;
+    }
+}
@@ -0,0 +1,300 @@
+/**
+
+ * File: AutoPlayRunner.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import java.awt.Point;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays complete games with bots against {@link PuzzleRules}, without creating
+ * any Swing components, and reports throughput, per-move latency and
+ * allocation rate. The board layout and the level changes come from the same
+ * PuzzleRules methods the game window uses.
+ *
+ * This is its own entry point so AWT is never initialised; launching through
+ * PuzzleGame would start the toolkit before main runs.
+ *
+ * Usage: java AutoPlayRunner [games] [--bot greedy|random] [--seed n]
+ *                            [--threads n] [--screen WIDTHxHEIGHT]
+ *
+ * Without --threads every game gets a virtual thread where the runtime has
+ * them, or there is one platform thread per core; --threads n uses a pool of
+ * n platform threads, to check how throughput scales with cores.
+ */
+class AutoPlayRunner {
+    private static final int SECONDS_PER_MOVE = 1;
+    private static final int JITTER = 20;
+    private static final int MAX_TIMEOUTS = 3; // The game itself starts over forever
+
+    enum Bot {
+        /** Always drags the first misplaced piece to its own slot. */
+        GREEDY,
+        /** Like GREEDY half of the time, otherwise drops the piece somewhere random. */
+        RANDOM
+    }
+
+    private final int games;
+    private final Bot bot;
+    private final long seed;
+    private final int threads;
+    private final int screenWidth; // Plain ints: java.awt.Dimension would load the AWT libraries
+    private final int screenHeight;
+    private String threadType;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong wins = new AtomicLong();
+    private final AtomicLong totalScore = new AtomicLong();
+
+    public AutoPlayRunner(int games, Bot bot, long seed, int threads, int screenWidth, int screenHeight) {
+        this.games = games;
+        this.bot = bot;
+        this.seed = seed;
+        this.threads = threads;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int games = 10000;
+        Bot bot = Bot.GREEDY;
+        long seed = System.nanoTime();
+        int threads = 0;
+        int screenWidth = 1920;
+        int screenHeight = 1080;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--bot") && i + 1 < args.length) {
+                bot = Bot.valueOf(args[++i].toUpperCase());
+            } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--screen") && i + 1 < args.length) {
+                String[] size = args[++i].split("x");
+                screenWidth = Integer.parseInt(size[0]);
+                screenHeight = Integer.parseInt(size[1]);
+            } else if (!args[i].startsWith("--")) {
+                games = Integer.parseInt(args[i]);
+            }
+        }
+        new AutoPlayRunner(games, bot, seed, threads, screenWidth, screenHeight).run();
+    }
+
+    public void run() throws Exception {
+        // Warm up so the report measures compiled code
+        for (int i = 0; i < Math.min(games, 500); i++) {
+            playGame(new Random(i), new LatencyHistogram());
+        }
+        totalScore.set(0);
+
+        ExecutorService executor = newExecutor();
+        long allocatedBefore = totalAllocatedBytes();
+        long start = System.nanoTime();
+        long allocated;
+        try {
+            Future<?>[] results = new Future<?>[games];
+            for (int i = 0; i < games; i++) {
+                long gameSeed = seed + i;
+                results[i] = executor.submit(() -> {
+                    LatencyHistogram histogram = new LatencyHistogram();
+                    if (playGame(new Random(gameSeed), histogram)) {
+                        wins.incrementAndGet();
+                    }
+                    latencies.add(histogram);
+                });
+            }
+            for (Future<?> result : results) {
+                result.get(); // Surface rule failures
+            }
+        } finally {
+            // Measured before shutting down, while the pool threads are still alive
+            long allocatedAfter = totalAllocatedBytes();
+            allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Bot: %s, games: %d (%d won), cores: %d, threads: %s%n", bot, games, wins.get(),
+            Runtime.getRuntime().availableProcessors(), threadType);
+        System.out.printf("Games/s: %.1f, moves/s: %.1f, average high score: %.2f%n",
+            games / seconds, latencies.count() / seconds, (double) totalScore.get() / games);
+        System.out.printf("Move latency (ns): p50 %d, p90 %d, p99 %d, p99.9 %d, max %d%n",
+            latencies.percentile(50), latencies.percentile(90), latencies.percentile(99),
+            latencies.percentile(99.9), latencies.max());
+        if (allocated >= 0) {
+            System.out.printf("Allocation rate: %.1f MB/s (%.1f KB per game)%n",
+                allocated / seconds / (1024 * 1024), allocated / 1024.0 / games);
+        } else {
+            System.out.println("Allocation rate: not available on this runtime");
+        }
+    }
+
+    /**
+     * Plays one game from the first level. Returns true if the bot finished
+     * all levels. Running out of time sends the bot back the way it sends a
+     * player back; after MAX_TIMEOUTS of those the game counts as lost.
+     */
+    boolean playGame(Random random, LatencyHistogram histogram) {
+        int highScore = 0;
+        int timeouts = 0;
+        int level = 1;
+        Point origin = PuzzleRules.boardOrigin(screenWidth, screenHeight);
+        while (!PuzzleRules.isGameCompleted(level)) {
+            int count = PuzzleRules.piecesForLevel(level);
+            List<Point> initialPositions = PuzzleRules.shuffledStartPositions(count, PuzzleRules.startAreaTop(screenHeight), random);
+            Point[] correctPositions = PuzzleRules.correctPositions(level, origin, 0);
+            Point[] positions = new Point[count];
+            for (int i = 0; i < count; i++) {
+                positions[i] = new Point(initialPositions.get(i));
+            }
+
+            int timeLeft = PuzzleRules.timeForLevel(level);
+            boolean solved = false;
+            while (!solved && timeLeft > 0) {
+                timeLeft -= SECONDS_PER_MOVE;
+
+                int piece = 0;
+                while (positions[piece].equals(correctPositions[piece])) {
+                    piece++;
+                }
+                int x;
+                int y;
+                if (bot == Bot.GREEDY || random.nextBoolean()) {
+                    x = correctPositions[piece].x + random.nextInt(2 * JITTER + 1) - JITTER;
+                    y = correctPositions[piece].y + random.nextInt(2 * JITTER + 1) - JITTER;
+                } else {
+                    x = random.nextInt(screenWidth);
+                    y = random.nextInt(screenHeight);
+                }
+
+                long moveStart = System.nanoTime();
+                int slot = PuzzleRules.findSnapSlot(x, y, correctPositions);
+                positions[piece].setLocation(slot < 0 ? initialPositions.get(piece) : correctPositions[slot]);
+                solved = PuzzleRules.isSolved(positions, correctPositions);
+                histogram.record(System.nanoTime() - moveStart);
+            }
+
+            if (solved) {
+                highScore = PuzzleRules.highScoreAfter(level, highScore);
+                level = PuzzleRules.levelAfterSolving(level);
+            } else if (++timeouts == MAX_TIMEOUTS) {
+                totalScore.addAndGet(highScore);
+                return false;
+            } else {
+                level = PuzzleRules.levelAfterTimeout(level);
+            }
+        }
+        totalScore.addAndGet(highScore);
+        return true;
+    }
+
+    private ExecutorService newExecutor() {
+        if (threads > 0) {
+            threadType = threads + " platform";
+            return Executors.newFixedThreadPool(threads);
+        }
+        // Virtual threads where the runtime has them, one platform thread per core otherwise
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            threadType = "virtual";
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            threadType = cores + " platform";
+            return Executors.newFixedThreadPool(cores);
+        }
+    }
+
+    /**
+     * Heap allocated by all threads so far, or -1 if the runtime can't tell.
+     * Per-thread counters don't work for virtual threads, so this is measured
+     * for the whole JVM: with getTotalThreadAllocatedBytes where the runtime
+     * has it, otherwise as the sum over the live threads.
+     */
+    private static long totalAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threadBean;
+        try {
+            if (!allocation.isThreadAllocatedMemoryEnabled()) {
+                return -1;
+            }
+            try {
+                Method total = com.sun.management.ThreadMXBean.class.getMethod("getTotalThreadAllocatedBytes");
+                return (Long) total.invoke(allocation);
+            } catch (ReflectiveOperationException e) {
+                long sum = 0;
+                for (long bytes : allocation.getThreadAllocatedBytes(threadBean.getAllThreadIds())) {
+                    sum += Math.max(bytes, 0);
+                }
+                return sum;
+            }
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Log-linear latency histogram: 16 linear sub-buckets per power of two,
+     * so percentiles are accurate to about 6%.
+     */
+    static class LatencyHistogram {
+        private static final int SUB_BUCKETS = 16;
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long total;
+        private long max;
+
+        void record(long nanos) {
+            long value = Math.max(nanos, 1);
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = exponent < 4 ? (int) value : (int) (value >>> (exponent - 4)) & (SUB_BUCKETS - 1);
+            counts[exponent * SUB_BUCKETS + sub]++;
+            total++;
+            max = Math.max(max, nanos);
+        }
+
+        synchronized void add(LatencyHistogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+
+        synchronized long percentile(double percentile) {
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    int exponent = i / SUB_BUCKETS;
+                    int sub = i % SUB_BUCKETS;
+                    return exponent < 4 ? sub : (long) (SUB_BUCKETS + sub) << (exponent - 4);
+                }
+            }
+            return max;
+        }
+
+        synchronized long count() {
+            return total;
+        }
+
+        synchronized long max() {
+            return max;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+/**
+
+ * File: CoopClient.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import javax.swing.SwingUtilities;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Connects a game to a {@link CoopServer}. Grabs, drops and board requests are
+ * sent right away, drag updates are coalesced to the latest position per piece
+ * and sent once per tick. Piece messages are tagged with the generation of the
+ * current board, and incoming ones for any other board are dropped. Incoming
+ * events are delivered to the listener on the event dispatch thread, and so
+ * is the end of the session unless close() ended it.
+ */
+class CoopClient implements Runnable {
+    private final SocketChannel channel;
+    private final Selector selector;
+    private volatile CoopListener listener;
+    private final int playerId;
+    private final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+    private final ByteBuffer out = ByteBuffer.allocate(256 * 1024);
+    private volatile boolean running = true;
+    private boolean started;
+
+    // Guarded by this: the board, urgent messages and the coalesced drag updates
+    private Board board;
+    private final ByteBuffer urgent = ByteBuffer.allocate(16 * 1024);
+    private short[] pendingX = new short[0];
+    private short[] pendingY = new short[0];
+    private boolean[] moved = new boolean[0]; // Has a position that still needs sending
+    private boolean[] queued = new boolean[0]; // In movedPieces until the next tick, at most once
+    private int[] movedPieces = new int[0];
+    private int movedCount;
+    private String endReason; // Why the session is being given up, if it is
+
+    private CoopClient(SocketChannel channel, int playerId, Board board) throws IOException {
+        this.channel = channel;
+        this.playerId = playerId;
+        this.board = board;
+        selector = Selector.open();
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ);
+    }
+
+    /**
+     * Connects and waits for the server's welcome, so the player id and the
+     * board the other players are on are known before the first board is built.
+     */
+    public static CoopClient connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        try {
+            channel.socket().setTcpNoDelay(true);
+            ByteBuffer welcome = readFully(channel, 2);
+            if (welcome.get() != CoopServer.WELCOME) {
+                throw new IOException("Unexpected handshake from " + host + ":" + port);
+            }
+            int playerId = welcome.get();
+            ByteBuffer header = readFully(channel, 20);
+            if (header.get(0) != CoopServer.BOARD) {
+                throw new IOException("Unexpected handshake from " + host + ":" + port);
+            }
+            ByteBuffer name = readFully(channel, header.getShort(18) & 0xFFFF);
+            ByteBuffer message = ByteBuffer.allocate(header.capacity() + name.capacity());
+            message.put(header).put(name).flip();
+            message.get();
+            return new CoopClient(channel, playerId, Board.read(message));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer readFully(SocketChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Session closed before welcome");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    /** The board the session is on, as last delivered to the listener. */
+    public synchronized Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Sets the listener. The first call starts reading from the server, so
+     * nothing is delivered before there is a game to apply it to.
+     */
+    public synchronized void setListener(CoopListener listener) {
+        this.listener = listener;
+        if (!started) {
+            started = true;
+            Thread thread = new Thread(this, "coop-client");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public synchronized void grab(int piece) {
+        ByteBuffer out = urgentFor(7);
+        if (out != null) {
+            out.put(CoopServer.GRAB).putInt(board.getGeneration()).putShort((short) piece);
+            selector.wakeup();
+        }
+    }
+
+    public synchronized void move(int piece, int x, int y) {
+        if (piece >= moved.length) {
+            int size = Math.max(piece + 1, moved.length * 2);
+            pendingX = Arrays.copyOf(pendingX, size);
+            pendingY = Arrays.copyOf(pendingY, size);
+            moved = Arrays.copyOf(moved, size);
+            queued = Arrays.copyOf(queued, size);
+            movedPieces = Arrays.copyOf(movedPieces, size);
+        }
+        pendingX[piece] = (short) x;
+        pendingY[piece] = (short) y;
+        moved[piece] = true;
+        if (!queued[piece]) {
+            queued[piece] = true;
+            movedPieces[movedCount++] = piece;
+        }
+    }
+
+    public synchronized void drop(int piece, int x, int y) {
+        if (piece < moved.length) {
+            moved[piece] = false; // The drop carries the final position; the queued entry goes stale
+        }
+        ByteBuffer out = urgentFor(11);
+        if (out != null) {
+            out.put(CoopServer.DROP).putInt(board.getGeneration()).putShort((short) piece).putShort((short) x).putShort((short) y);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Asks the server to replace the current board. Nothing changes locally
+     * until the server deals the new board to every player.
+     */
+    public synchronized void requestBoard(int level, boolean jigsaw, String image, byte reason) {
+        byte[] name = image.getBytes(StandardCharsets.UTF_8);
+        if (name.length > CoopServer.MAX_IMAGE_NAME) {
+            throw new IllegalArgumentException("Image name too long: " + image);
+        }
+        ByteBuffer out = urgentFor(10 + name.length);
+        if (out != null) {
+            out.put(CoopServer.BOARD).putInt(board.getGeneration()).put((byte) level).put((byte) (jigsaw ? 1 : 0))
+                .put(reason).putShort((short) name.length).put(name);
+            selector.wakeup();
+        }
+    }
+
+    // Returns the urgent buffer if size more bytes fit. If they don't, the
+    // thread isn't getting anything out to the host, so the session is given up.
+    private ByteBuffer urgentFor(int size) {
+        if (!running) {
+            return null;
+        }
+        if (urgent.remaining() < size) {
+            endReason = "Fell too far behind the host";
+            running = false;
+            selector.wakeup();
+            return null;
+        }
+        return urgent;
+    }
+
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        long nextTick = System.currentTimeMillis() + CoopServer.TICK_MILLIS;
+        String reason = null;
+        try {
+            while (running) {
+                long wait = nextTick - System.currentTimeMillis();
+                if (wait > 0) {
+                    selector.select(wait);
+                } else {
+                    selector.selectNow();
+                }
+                selector.selectedKeys().clear();
+                if (channel.read(in) < 0) {
+                    reason = "The host ended the session";
+                    break;
+                }
+                if (in.position() > 0) {
+                    dispatch();
+                }
+                boolean tick = System.currentTimeMillis() >= nextTick;
+                synchronized (this) {
+                    if (urgent.position() <= out.remaining()) {
+                        urgent.flip();
+                        out.put(urgent);
+                        urgent.clear();
+                    }
+                    if (tick) {
+                        int kept = 0;
+                        for (int i = 0; i < movedCount; i++) {
+                            int piece = movedPieces[i];
+                            if (moved[piece] && out.remaining() < 11) {
+                                movedPieces[kept++] = piece; // Sent once the socket has drained
+                                continue;
+                            }
+                            queued[piece] = false;
+                            if (moved[piece]) {
+                                moved[piece] = false;
+                                out.put(CoopServer.MOVE).putInt(board.getGeneration()).putShort((short) piece)
+                                    .putShort(pendingX[piece]).putShort(pendingY[piece]);
+                            }
+                        }
+                        movedCount = kept;
+                    }
+                }
+                if (tick) {
+                    nextTick = System.currentTimeMillis() + CoopServer.TICK_MILLIS;
+                }
+                out.flip();
+                channel.write(out);
+                out.compact();
+                SelectionKey key = channel.keyFor(selector);
+                key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            reason = "Lost the connection to the host: " + e.getMessage();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            reason = "The co-op session failed: " + e;
+        } finally {
+            running = false;
+            try {
+                selector.close();
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        synchronized (this) {
+            if (reason == null) {
+                reason = endReason; // Still null if close() ended the session
+            }
+        }
+        if (reason != null) {
+            CoopListener listener = this.listener;
+            String why = reason;
+            SwingUtilities.invokeLater(() -> listener.sessionClosed(why));
+        }
+    }
+
+    // Decodes every complete message and hands them to the EDT in one batch
+    private void dispatch() {
+        in.flip();
+        int start = in.position();
+        while (in.hasRemaining()) {
+            byte type = in.get(in.position());
+            int size;
+            if (type == CoopServer.BOARD) {
+                size = in.remaining() < 20 ? 20 : 20 + (in.getShort(in.position() + 18) & 0xFFFF);
+            } else if (type == CoopServer.GRANT) {
+                size = 8;
+            } else if (type == CoopServer.DENY || type == CoopServer.RELEASE) {
+                size = 7;
+            } else {
+                size = 11;
+            }
+            if (in.remaining() < size) {
+                break;
+            }
+            in.position(in.position() + size);
+        }
+        byte[] batch = new byte[in.position() - start];
+        in.position(start);
+        in.get(batch);
+        in.compact();
+        if (batch.length > 0) {
+            SwingUtilities.invokeLater(() -> deliver(ByteBuffer.wrap(batch)));
+        }
+    }
+
+    private void deliver(ByteBuffer batch) {
+        CoopListener listener = this.listener;
+        while (batch.hasRemaining()) {
+            byte type = batch.get();
+            if (type == CoopServer.BOARD) {
+                Board next = Board.read(batch);
+                synchronized (this) {
+                    board = next;
+                    // Drag updates still queued belong to the old board
+                    Arrays.fill(moved, false);
+                    Arrays.fill(queued, false);
+                    movedCount = 0;
+                }
+                listener.boardChanged(next);
+                continue;
+            }
+            int generation = batch.getInt();
+            int piece = batch.getShort() & 0xFFFF;
+            boolean current = generation == getBoard().getGeneration();
+            switch (type) {
+                case CoopServer.GRANT:
+                    byte player = batch.get();
+                    if (current) {
+                        listener.pieceGrabbed(piece, player);
+                    }
+                    break;
+                case CoopServer.DENY:
+                    if (current) {
+                        listener.grabDenied(piece);
+                    }
+                    break;
+                case CoopServer.RELEASE:
+                    if (current) {
+                        listener.pieceReleased(piece);
+                    }
+                    break;
+                case CoopServer.MOVE:
+                case CoopServer.DROP:
+                    short x = batch.getShort();
+                    short y = batch.getShort();
+                    if (current && type == CoopServer.MOVE) {
+                        listener.pieceMoved(piece, x, y);
+                    } else if (current) {
+                        listener.pieceDropped(piece, x, y);
+                    }
+                    break;
+                default:
+                    return;
+            }
+        }
+    }
+
+    /** A board as dealt by the server. */
+    static final class Board {
+        private final int generation;
+        private final int level;
+        private final boolean jigsaw;
+        private final byte reason;
+        private final long seed;
+        private final int secondsLeft;
+        private final String image;
+
+        private Board(int generation, int level, boolean jigsaw, byte reason, long seed, int secondsLeft, String image) {
+            this.generation = generation;
+            this.level = level;
+            this.jigsaw = jigsaw;
+            this.reason = reason;
+            this.seed = seed;
+            this.secondsLeft = secondsLeft;
+            this.image = image;
+        }
+
+        // Reads a BOARD message whose type byte has already been consumed
+        static Board read(ByteBuffer message) {
+            int generation = message.getInt();
+            int level = message.get();
+            boolean jigsaw = message.get() != 0;
+            byte reason = message.get();
+            long seed = message.getLong();
+            int secondsLeft = message.getShort() & 0xFFFF;
+            byte[] name = new byte[message.getShort() & 0xFFFF];
+            message.get(name);
+            return new Board(generation, level, jigsaw, reason, seed, secondsLeft, new String(name, StandardCharsets.UTF_8));
+        }
+
+        public int getGeneration() {
+            return generation;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public boolean isJigsaw() {
+            return jigsaw;
+        }
+
+        /** CoopServer.NEW_BOARD, SOLVED or TIMED_OUT. */
+        public byte getReason() {
+            return reason;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public int getSecondsLeft() {
+            return secondsLeft;
+        }
+
+        public String getImage() {
+            return image;
+        }
+
+        /** False before anybody has picked a picture and after the last level. */
+        public boolean isPlayable() {
+            return generation > 0 && level >= 1 && level <= PuzzleRules.LEVEL_PIECES.length;
+        }
+    }
+}
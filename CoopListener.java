@@ -0,0 +1,37 @@
+/**
+
+ * File: CoopListener.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+/**
+ * Receives co-op session events on the event dispatch thread.
+ */
+interface CoopListener {
+    /**
+     * The server dealt a new board to every player. Piece events that follow
+     * are for this board; the ones for the old board are never delivered.
+     */
+    void boardChanged(CoopClient.Board board);
+
+    void pieceGrabbed(int piece, int player);
+
+    void grabDenied(int piece);
+
+    void pieceReleased(int piece);
+
+    void pieceMoved(int piece, int x, int y);
+
+    void pieceDropped(int piece, int x, int y);
+
+    /**
+     * The session ended without close() being called: the host quit, the
+     * connection failed or this player fell too far behind. Nothing else is
+     * delivered after this.
+     */
+    void sessionClosed(String reason);
+}
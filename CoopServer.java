@@ -0,0 +1,504 @@
+/**
+
+ * File: CoopServer.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Hosts a local co-op session on a single selector thread. The server owns
+ * the board every player is on (picture, level, jigsaw flag, shuffle seed and
+ * the level's time limit) and the piece ownership table, so only one player
+ * can hold a piece at a time. Drag updates are coalesced and broadcast once
+ * per tick.
+ *
+ * Every board has a generation number. Piece messages carry the generation of
+ * the board they were meant for, and messages for an older board are dropped.
+ * Piece positions are relative to the board's top-left corner, since the
+ * board sits in a different place on every screen. The tray the pieces start
+ * in is laid out from the edge of each player's screen instead, so a piece
+ * going back to its place in the tray is sent with x = IN_TRAY.
+ *
+ * Wire format (big endian, size implied by the type byte):
+ *   GRAB    type, int generation, short piece                      client -> server
+ *   MOVE    type, int generation, short piece, short x, short y    both ways
+ *   DROP    type, int generation, short piece, short x, short y    both ways
+ *   BOARD   type, int generation, byte level, byte jigsaw,
+ *           byte reason, UTF image                                 client -> server
+ *   WELCOME type, byte player, followed by the current BOARD       server -> client
+ *   BOARD   type, int generation, byte level, byte jigsaw,
+ *           byte reason, long seed, short secondsLeft, UTF image   server -> client
+ *   GRANT   type, int generation, short piece, byte player         server -> client
+ *   DENY    type, int generation, short piece                      server -> client
+ *   RELEASE type, int generation, short piece                      server -> client
+ *
+ * A client's BOARD asks to replace the board of the given generation; if
+ * somebody else replaced it first the request is ignored. Generation 0 means
+ * no board has been chosen yet.
+ */
+class CoopServer implements Runnable {
+    static final int DEFAULT_PORT = 5555;
+    static final long TICK_MILLIS = 33;
+
+    static final byte GRAB = 1;
+    static final byte MOVE = 2;
+    static final byte DROP = 3;
+    static final byte BOARD = 4;
+    static final byte WELCOME = 10;
+    static final byte GRANT = 11;
+    static final byte DENY = 12;
+    static final byte RELEASE = 13;
+
+    // Why the board changed
+    static final byte NEW_BOARD = 0;
+    static final byte SOLVED = 1;
+    static final byte TIMED_OUT = 2;
+
+    // x of a piece back at its place in the tray, wherever that is on the screen
+    static final short IN_TRAY = Short.MIN_VALUE;
+
+    static final int MAX_PLAYERS = 32;
+    static final int MAX_IMAGE_NAME = 1024;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final short FREE = -1;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Random random;
+    private final Player[] players = new Player[MAX_PLAYERS];
+    private volatile boolean running = true;
+
+    // The current board
+    private int generation;
+    private int level;
+    private boolean jigsaw;
+    private byte reason;
+    private String image = "";
+    private long boardSeed;
+    private long deadline; // When the level runs out, 0 if it has no time limit
+
+    // Ownership, the last known position of every piece and the pieces moved this tick
+    private short[] owners = new short[0];
+    private short[] pendingX = new short[0];
+    private short[] pendingY = new short[0];
+    private boolean[] placed = new boolean[0];
+    private boolean[] moved = new boolean[0];
+    private int[] movedPieces = new int[0];
+    private int movedCount;
+
+    public CoopServer(int port, long seed) throws IOException {
+        random = new Random(seed);
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public void start() {
+        Thread thread = new Thread(this, "coop-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        long nextTick = System.currentTimeMillis() + TICK_MILLIS;
+        try {
+            while (running) {
+                long wait = nextTick - System.currentTimeMillis();
+                if (wait > 0) {
+                    selector.select(wait);
+                } else {
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read((Player) key.attachment());
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                flush((Player) key.attachment());
+                            }
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() != null) {
+                            disconnect((Player) key.attachment());
+                        }
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (deadline != 0 && now >= deadline) {
+                    // Out of time: everybody starts over at the first level
+                    newBoard(PuzzleRules.levelAfterTimeout(level), jigsaw, TIMED_OUT, image);
+                }
+                if (now >= nextTick) {
+                    broadcastMoves();
+                    nextTick = System.currentTimeMillis() + TICK_MILLIS;
+                }
+                disconnectLagging();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            close();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        int id = 0;
+        while (id < MAX_PLAYERS && players[id] != null) {
+            id++;
+        }
+        if (id == MAX_PLAYERS) {
+            channel.close(); // Session is full
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Player player = new Player(id, channel);
+        player.key = channel.register(selector, SelectionKey.OP_READ, player);
+        players[id] = player;
+
+        player.out.put(WELCOME).put((byte) id);
+        sendBoard(player);
+        // Tell the newcomer where the pieces are and which are already held
+        for (int piece = 0; piece < owners.length; piece++) {
+            ByteBuffer out;
+            if (placed[piece] && (out = outFor(player, 11)) != null) {
+                out.put(MOVE).putInt(generation).putShort((short) piece).putShort(pendingX[piece]).putShort(pendingY[piece]);
+            }
+            if (owners[piece] != FREE && (out = outFor(player, 8)) != null) {
+                out.put(GRANT).putInt(generation).putShort((short) piece).put((byte) owners[piece]);
+            }
+        }
+        flush(player);
+    }
+
+    private void read(Player player) throws IOException {
+        ByteBuffer in = player.in;
+        if (player.channel.read(in) < 0) {
+            disconnect(player);
+            return;
+        }
+        in.flip();
+        while (in.hasRemaining()) {
+            byte type = in.get(in.position());
+            int size;
+            if (type == GRAB) {
+                size = 7;
+            } else if (type == MOVE || type == DROP) {
+                size = 11;
+            } else if (type == BOARD) {
+                size = in.remaining() < 10 ? 10 : 10 + (in.getShort(in.position() + 8) & 0xFFFF);
+            } else {
+                disconnect(player); // Protocol violation
+                return;
+            }
+            if (size > 10 + MAX_IMAGE_NAME) {
+                disconnect(player);
+                return;
+            }
+            if (in.remaining() < size) {
+                break;
+            }
+            in.get();
+            int messageGeneration = in.getInt();
+            if (type == BOARD) {
+                int requestedLevel = in.get();
+                boolean requestedJigsaw = in.get() != 0;
+                byte requestedReason = in.get();
+                byte[] name = new byte[in.getShort() & 0xFFFF];
+                in.get(name);
+                requestBoard(messageGeneration, requestedLevel, requestedJigsaw, requestedReason,
+                    new String(name, StandardCharsets.UTF_8));
+                continue;
+            }
+            int piece = in.getShort() & 0xFFFF;
+            short x = type == GRAB ? 0 : in.getShort();
+            short y = type == GRAB ? 0 : in.getShort();
+            if (messageGeneration != generation || generation == 0) {
+                continue; // Meant for a board that has been replaced
+            }
+            if (type == GRAB) {
+                grab(player, piece);
+            } else if (type == MOVE) {
+                move(player, piece, x, y);
+            } else {
+                drop(player, piece, x, y);
+            }
+        }
+        in.compact();
+    }
+
+    private void requestBoard(int baseGeneration, int newLevel, boolean newJigsaw, byte newReason, String newImage) {
+        if (baseGeneration != generation) {
+            return; // Somebody else changed the board first
+        }
+        if (newLevel < 1 || newLevel > PuzzleRules.LEVEL_PIECES.length + 1 || newImage.isEmpty()
+                || newReason < NEW_BOARD || newReason > TIMED_OUT) {
+            return;
+        }
+        newBoard(newLevel, newJigsaw, newReason, newImage);
+    }
+
+    // Replaces the board, forgets everything about the old one and deals the new one to everybody
+    private void newBoard(int newLevel, boolean newJigsaw, byte newReason, String newImage) {
+        generation++;
+        level = newLevel;
+        jigsaw = newJigsaw;
+        reason = newReason;
+        image = newImage;
+        boardSeed = random.nextLong();
+        deadline = !PuzzleRules.isGameCompleted(level)
+            ? System.currentTimeMillis() + PuzzleRules.timeForLevel(level) * 1000L : 0;
+        Arrays.fill(owners, FREE);
+        Arrays.fill(placed, false);
+        Arrays.fill(moved, false);
+        movedCount = 0;
+        for (Player p : players) {
+            sendBoard(p);
+        }
+    }
+
+    private void sendBoard(Player player) {
+        byte[] name = image.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = outFor(player, 20 + name.length);
+        if (out == null) {
+            return;
+        }
+        int secondsLeft = deadline == 0 ? 0 : (int) Math.max(0, (deadline - System.currentTimeMillis() + 999) / 1000);
+        out.put(BOARD).putInt(generation).put((byte) level).put((byte) (jigsaw ? 1 : 0)).put(reason)
+            .putLong(boardSeed).putShort((short) secondsLeft).putShort((short) name.length).put(name);
+    }
+
+    private void grab(Player player, int piece) {
+        ensureCapacity(piece + 1);
+        if (owners[piece] != FREE && owners[piece] != player.id) {
+            ByteBuffer out = outFor(player, 7);
+            if (out != null) {
+                out.put(DENY).putInt(generation).putShort((short) piece);
+            }
+            return;
+        }
+        owners[piece] = (short) player.id;
+        for (Player p : players) {
+            ByteBuffer out = outFor(p, 8);
+            if (out != null) {
+                out.put(GRANT).putInt(generation).putShort((short) piece).put((byte) player.id);
+            }
+        }
+    }
+
+    private void move(Player player, int piece, short x, short y) {
+        if (piece >= owners.length || owners[piece] != player.id) {
+            return; // Only the owner may move a piece
+        }
+        pendingX[piece] = x;
+        pendingY[piece] = y;
+        placed[piece] = true;
+        if (!moved[piece]) {
+            moved[piece] = true;
+            movedPieces[movedCount++] = piece;
+        }
+    }
+
+    private void drop(Player player, int piece, short x, short y) {
+        if (piece >= owners.length || owners[piece] != player.id) {
+            return;
+        }
+        owners[piece] = FREE;
+        pendingX[piece] = x;
+        pendingY[piece] = y;
+        placed[piece] = true;
+        for (Player p : players) {
+            ByteBuffer out = p != player ? outFor(p, 11) : null;
+            if (out != null) {
+                out.put(DROP).putInt(generation).putShort((short) piece).putShort(x).putShort(y);
+            }
+        }
+    }
+
+    private void broadcastMoves() {
+        for (Player p : players) {
+            if (p == null) {
+                continue;
+            }
+            for (int i = 0; i < movedCount; i++) {
+                int piece = movedPieces[i];
+                // Dropped pieces were already sent with their final position
+                ByteBuffer out;
+                if (owners[piece] != FREE && owners[piece] != p.id && (out = outFor(p, 11)) != null) {
+                    out.put(MOVE).putInt(generation).putShort((short) piece).putShort(pendingX[piece]).putShort(pendingY[piece]);
+                }
+            }
+        }
+        for (int i = 0; i < movedCount; i++) {
+            moved[movedPieces[i]] = false;
+        }
+        movedCount = 0;
+        for (Player p : players) {
+            if (p != null && !p.lagging && p.out.position() > 0) {
+                try {
+                    flush(p);
+                } catch (IOException e) {
+                    disconnect(p);
+                }
+            }
+        }
+    }
+
+    private void flush(Player player) throws IOException {
+        ByteBuffer out = player.out;
+        out.flip();
+        player.channel.write(out);
+        out.compact();
+        // Wait for the socket to drain before writing the rest
+        int ops = out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        if (player.key.interestOps() != ops) {
+            player.key.interestOps(ops);
+        }
+        if (out.remaining() < out.capacity() / 4) {
+            throw new IOException("Player " + player.id + " is not keeping up");
+        }
+    }
+
+    private void disconnect(Player player) {
+        if (players[player.id] != player) {
+            return;
+        }
+        players[player.id] = null;
+        player.key.cancel();
+        try {
+            player.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (int piece = 0; piece < owners.length; piece++) {
+            if (owners[piece] == player.id) {
+                owners[piece] = FREE;
+                for (Player p : players) {
+                    ByteBuffer out = outFor(p, 7);
+                    if (out != null) {
+                        out.put(RELEASE).putInt(generation).putShort((short) piece);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the player's output buffer if it has room for size more bytes.
+     * Otherwise the player has fallen behind: nothing more is queued for them
+     * and they are disconnected once the current message has been handled,
+     * rather than the player whose message could not be delivered.
+     */
+    private ByteBuffer outFor(Player player, int size) {
+        if (player == null || player.lagging) {
+            return null;
+        }
+        if (player.out.remaining() < size) {
+            player.lagging = true;
+            return null;
+        }
+        return player.out;
+    }
+
+    // Disconnecting releases pieces, which can leave others lagging in turn
+    private void disconnectLagging() {
+        boolean found = true;
+        while (found) {
+            found = false;
+            for (Player p : players) {
+                if (p != null && p.lagging) {
+                    disconnect(p);
+                    found = true;
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int pieces) {
+        if (pieces <= owners.length) {
+            return;
+        }
+        int size = Math.max(pieces, owners.length * 2);
+        int oldSize = owners.length;
+        owners = Arrays.copyOf(owners, size);
+        Arrays.fill(owners, oldSize, size, FREE);
+        pendingX = Arrays.copyOf(pendingX, size);
+        pendingY = Arrays.copyOf(pendingY, size);
+        placed = Arrays.copyOf(placed, size);
+        moved = Arrays.copyOf(moved, size);
+        movedPieces = Arrays.copyOf(movedPieces, size);
+    }
+
+    private void close() {
+        for (Player p : players) {
+            if (p != null) {
+                try {
+                    p.channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        try {
+            selector.close();
+            serverChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class Player {
+        private final int id;
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(16 * 1024);
+        private final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+        private SelectionKey key;
+        private boolean lagging;
+
+        Player(int id, SocketChannel channel) {
+            this.id = id;
+            this.channel = channel;
+        }
+    }
+}
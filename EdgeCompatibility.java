@@ -0,0 +1,180 @@
+/**
+
+ * File: EdgeCompatibility.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Scores how well every pair of tiles fits together along each of their four
+ * edges, and keeps the best k candidates per tile and edge so the assistant
+ * can answer instantly.
+ *
+ * The score is a prediction error: the colour gradient across the last two
+ * pixel lines of one tile is extrapolated one pixel over the seam and compared
+ * with the first line of the other tile, in both directions. Lower is better.
+ */
+class EdgeCompatibility {
+    static final int RIGHT = 0;
+    static final int BOTTOM = 1;
+    static final int LEFT = 2;
+    static final int TOP = 3;
+
+    private final int tiles;
+    private final int k;
+    // candidates[direction][tile * k + rank], best first
+    private final int[][] candidates = new int[4][];
+    private final int[][] scores = new int[4][];
+
+    private EdgeCompatibility(int tiles, int k) {
+        this.tiles = tiles;
+        this.k = k;
+    }
+
+    /**
+     * Scores the tiles of an image cut into rows x cols cells, in the same
+     * row-major order as the pieces in addPieces.
+     */
+    public static EdgeCompatibility compute(BufferedImage image, int rows, int cols, int k) {
+        int tileWidth = image.getWidth() / cols;
+        int tileHeight = image.getHeight() / rows;
+        int tiles = rows * cols;
+        EdgeCompatibility result = new EdgeCompatibility(tiles, Math.min(k, Math.max(1, tiles - 1)));
+        int[] pixels = image.getRGB(0, 0, cols * tileWidth, rows * tileHeight, null, 0, cols * tileWidth);
+        int stride = cols * tileWidth;
+
+        // For each tile: the edge line itself, and the line one pixel past the
+        // edge as predicted from the gradient, as flat RGB ints
+        Edges right = new Edges(tiles, tileHeight);
+        Edges left = new Edges(tiles, tileHeight);
+        Edges bottom = new Edges(tiles, tileWidth);
+        Edges top = new Edges(tiles, tileWidth);
+        IntStream.range(0, tiles).parallel().forEach(t -> {
+            int x0 = (t % cols) * tileWidth;
+            int y0 = (t / cols) * tileHeight;
+            int x1 = x0 + tileWidth - 1;
+            int y1 = y0 + tileHeight - 1;
+            int inset = tileWidth > 1 ? 1 : 0;
+            for (int y = 0; y < tileHeight; y++) {
+                int row = (y0 + y) * stride;
+                right.set(t, y, pixels[row + x1], pixels[row + x1 - inset]);
+                left.set(t, y, pixels[row + x0], pixels[row + x0 + inset]);
+            }
+            int insetRow = (tileHeight > 1 ? 1 : 0) * stride;
+            for (int x = 0; x < tileWidth; x++) {
+                bottom.set(t, x, pixels[y1 * stride + x0 + x], pixels[y1 * stride - insetRow + x0 + x]);
+                top.set(t, x, pixels[y0 * stride + x0 + x], pixels[y0 * stride + insetRow + x0 + x]);
+            }
+        });
+
+        result.rank(RIGHT, right, left, false);
+        result.rank(LEFT, right, left, true);
+        result.rank(BOTTOM, bottom, top, false);
+        result.rank(TOP, bottom, top, true);
+        return result;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /** The tile that fits best on the given side of tile, or -1 if there are no other tiles. */
+    public int best(int tile, int direction) {
+        return tiles > 1 ? candidates[direction][tile * k] : -1;
+    }
+
+    public int candidate(int tile, int direction, int rank) {
+        return candidates[direction][tile * k + rank];
+    }
+
+    public int score(int tile, int direction, int rank) {
+        return scores[direction][tile * k + rank];
+    }
+
+    /** True if tile and its best neighbour on that side pick each other. */
+    public boolean isBestBuddy(int tile, int direction) {
+        int other = best(tile, direction);
+        return other >= 0 && best(other, opposite(direction)) == tile;
+    }
+
+    static int opposite(int direction) {
+        return (direction + 2) % 4;
+    }
+
+    // Fills the top-k lists for one direction. The first edge set belongs to the
+    // tile on the left/top of the seam; with reverse the candidate is that tile.
+    private void rank(int direction, Edges first, Edges second, boolean reverse) {
+        int[] bestTiles = new int[tiles * k];
+        int[] bestScores = new int[tiles * k];
+        IntStream.range(0, tiles).parallel().forEach(tile -> {
+            int base = tile * k;
+            Arrays.fill(bestScores, base, base + k, Integer.MAX_VALUE);
+            Arrays.fill(bestTiles, base, base + k, -1);
+            for (int other = 0; other < tiles; other++) {
+                if (other == tile) {
+                    continue;
+                }
+                int score = reverse ? dissimilarity(first, other, second, tile) : dissimilarity(first, tile, second, other);
+                if (score < bestScores[base + k - 1]) {
+                    // Insert into the sorted top-k list
+                    int slot = base + k - 1;
+                    while (slot > base && bestScores[slot - 1] > score) {
+                        bestScores[slot] = bestScores[slot - 1];
+                        bestTiles[slot] = bestTiles[slot - 1];
+                        slot--;
+                    }
+                    bestScores[slot] = score;
+                    bestTiles[slot] = other;
+                }
+            }
+        });
+        candidates[direction] = bestTiles;
+        scores[direction] = bestScores;
+    }
+
+    // A plain int loop over flat arrays, which HotSpot can auto-vectorize
+    private static int dissimilarity(Edges a, int tileA, Edges b, int tileB) {
+        int length = a.length;
+        int offsetA = tileA * length;
+        int offsetB = tileB * length;
+        int[] lineA = a.line;
+        int[] predictedA = a.predicted;
+        int[] lineB = b.line;
+        int[] predictedB = b.predicted;
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += Math.abs(predictedA[offsetA + i] - lineB[offsetB + i])
+                + Math.abs(predictedB[offsetB + i] - lineA[offsetA + i]);
+        }
+        return sum;
+    }
+
+    private static class Edges {
+        private final int length;
+        private final int[] line;
+        private final int[] predicted;
+
+        Edges(int tiles, int pixels) {
+            length = pixels * 3;
+            line = new int[tiles * length];
+            predicted = new int[tiles * length];
+        }
+
+        void set(int tile, int pixel, int edge, int inner) {
+            int index = tile * length + pixel * 3;
+            for (int shift = 16, c = 0; c < 3; shift -= 8, c++) {
+                int value = (edge >> shift) & 0xFF;
+                int gradient = value - ((inner >> shift) & 0xFF);
+                line[index + c] = value;
+                predicted[index + c] = value + gradient;
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/**
+
+ * File: ImageLibrary.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import javax.swing.AbstractListModel;
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The images in a directory as a list model. A background thread indexes the
+ * directory in batches and then watches it, so files that are added or
+ * deleted show up while the browser is open, and a file that is written to
+ * is reported as changed so its thumbnail is decoded again. The model is only
+ * changed on the event dispatch thread.
+ */
+class ImageLibrary extends AbstractListModel<PuzzleGame.ImageOption> {
+    private static final int BATCH_SIZE = 500;
+    private static final String[] EXTENSIONS = {".png", ".jpg", ".jpeg", ".gif", ".bmp"};
+
+    private final Path directory;
+    private final Function<Path, PuzzleGame.ImageOption> factory;
+    private final List<PuzzleGame.ImageOption> options = new ArrayList<>();
+    private final Map<Path, PuzzleGame.ImageOption> byPath = new HashMap<>();
+    private final Thread indexer;
+    private volatile WatchService watcher;
+
+    public ImageLibrary(Path directory, Function<Path, PuzzleGame.ImageOption> factory) {
+        this.directory = directory;
+        this.factory = factory;
+        indexer = new Thread(this::index, "image-library-indexer");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    @Override
+    public int getSize() {
+        return options.size();
+    }
+
+    @Override
+    public PuzzleGame.ImageOption getElementAt(int index) {
+        return options.get(index);
+    }
+
+    public void close() {
+        indexer.interrupt();
+        WatchService service = watcher;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void index() {
+        // Closed here on every exit, since close() may run before the field is set
+        try (WatchService service = directory.getFileSystem().newWatchService()) {
+            watcher = service;
+            // Register first so nothing created during the scan is missed
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            scan();
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                List<Path> added = new ArrayList<>();
+                List<Path> removed = new ArrayList<>();
+                List<Path> modified = new ArrayList<>();
+                boolean overflow = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else if (isImage((Path) event.context())) {
+                        Path file = directory.resolve((Path) event.context());
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            added.add(file);
+                        } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                            removed.add(file);
+                        } else {
+                            modified.add(file);
+                        }
+                    }
+                }
+                key.reset();
+                if (overflow) {
+                    scan();
+                    // Anything may have been rewritten while events were lost
+                    SwingUtilities.invokeLater(() -> changed(new ArrayList<>(byPath.keySet())));
+                } else if (!added.isEmpty() || !removed.isEmpty() || !modified.isEmpty()) {
+                    SwingUtilities.invokeLater(() -> {
+                        remove(removed);
+                        add(added);
+                        changed(modified);
+                    });
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Library closed
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Lists the directory in batches; anything no longer there is dropped at the end
+    private void scan() throws IOException {
+        Set<Path> seen = new HashSet<>();
+        List<Path> batch = new ArrayList<>(BATCH_SIZE);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (isImage(file.getFileName()) && Files.isRegularFile(file)) {
+                    seen.add(file);
+                    batch.add(file);
+                    if (batch.size() == BATCH_SIZE) {
+                        List<Path> full = batch;
+                        SwingUtilities.invokeLater(() -> add(full));
+                        batch = new ArrayList<>(BATCH_SIZE);
+                    }
+                }
+            }
+        }
+        List<Path> last = batch;
+        SwingUtilities.invokeLater(() -> {
+            add(last);
+            List<Path> gone = new ArrayList<>();
+            for (Path file : byPath.keySet()) {
+                if (!seen.contains(file)) {
+                    gone.add(file);
+                }
+            }
+            remove(gone);
+        });
+    }
+
+    private void add(List<Path> files) {
+        int first = options.size();
+        for (Path file : files) {
+            if (!byPath.containsKey(file)) {
+                PuzzleGame.ImageOption option = factory.apply(file);
+                byPath.put(file, option);
+                options.add(option);
+            }
+        }
+        if (options.size() > first) {
+            fireIntervalAdded(this, first, options.size() - 1);
+        }
+    }
+
+    private void remove(List<Path> files) {
+        for (Path file : files) {
+            PuzzleGame.ImageOption option = byPath.remove(file);
+            if (option != null) {
+                int index = options.indexOf(option);
+                options.remove(index);
+                fireIntervalRemoved(this, index, index);
+            }
+        }
+    }
+
+    // Tells listeners the files were rewritten, e.g. still being copied when first read
+    private void changed(List<Path> files) {
+        for (Path file : files) {
+            PuzzleGame.ImageOption option = byPath.get(file);
+            if (option != null) {
+                int index = options.indexOf(option);
+                fireContentsChanged(this, index, index);
+            }
+        }
+    }
+
+    private static boolean isImage(Path name) {
+        String lower = name.toString().toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS) {
+            if (lower.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,160 @@
+/**
+
+ * File: JigsawCutter.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Cuts an image into jigsaw-shaped pieces. Every seam between two neighbouring
+ * cells gets a random tab/blank, so the two pieces on either side always fit.
+ * Piece bitmaps and their hit masks are rendered once, in parallel.
+ */
+class JigsawCutter {
+    private static final Color OUTLINE = new Color(0, 0, 0, 90);
+    private static final int ALPHA_THRESHOLD = 128;
+
+    private final int rows;
+    private final int cols;
+    private final int pieceWidth;
+    private final int pieceHeight;
+    private final int padding;
+    // +1 means the piece above/left has a tab sticking into the piece below/right
+    private final int[][] horizontalSeams;
+    private final int[][] verticalSeams;
+    private BufferedImage[] images;
+    private long[][] masks;
+
+    public JigsawCutter(int rows, int cols, int pieceWidth, int pieceHeight, Random random) {
+        this.rows = rows;
+        this.cols = cols;
+        this.pieceWidth = pieceWidth;
+        this.pieceHeight = pieceHeight;
+        this.padding = Math.max(1, Math.min(pieceWidth, pieceHeight) / 4);
+        horizontalSeams = new int[Math.max(0, rows - 1)][cols];
+        verticalSeams = new int[rows][Math.max(0, cols - 1)];
+        for (int[] seam : horizontalSeams) {
+            for (int c = 0; c < seam.length; c++) {
+                seam[c] = random.nextBoolean() ? 1 : -1;
+            }
+        }
+        for (int[] seam : verticalSeams) {
+            for (int c = 0; c < seam.length; c++) {
+                seam[c] = random.nextBoolean() ? 1 : -1;
+            }
+        }
+    }
+
+    /** Space around the cell that tabs may grow into, on every side. */
+    public int getPadding() {
+        return padding;
+    }
+
+    public BufferedImage getImage(int index) {
+        return images[index];
+    }
+
+    public long[] getMask(int index) {
+        return masks[index];
+    }
+
+    /**
+     * Renders every piece of {@code source} (which must be cols * pieceWidth by
+     * rows * pieceHeight) with its alpha mask and packs the opaque pixels into
+     * one bit per pixel for hit testing.
+     */
+    public void cut(BufferedImage source) {
+        int count = rows * cols;
+        images = new BufferedImage[count];
+        masks = new long[count][];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            images[i] = renderPiece(source, i / cols, i % cols);
+            masks[i] = createMask(images[i]);
+        });
+    }
+
+    Shape createShape(int row, int col) {
+        int top = row == 0 ? 0 : -horizontalSeams[row - 1][col];
+        int bottom = row == rows - 1 ? 0 : horizontalSeams[row][col];
+        int left = col == 0 ? 0 : -verticalSeams[row][col - 1];
+        int right = col == cols - 1 ? 0 : verticalSeams[row][col];
+
+        double x0 = padding;
+        double y0 = padding;
+        double x1 = padding + pieceWidth;
+        double y1 = padding + pieceHeight;
+
+        Path2D.Double path = new Path2D.Double();
+        path.moveTo(x0, y0);
+        addEdge(path, x0, y0, x1, y0, 0, -1, top);
+        addEdge(path, x1, y0, x1, y1, 1, 0, right);
+        addEdge(path, x1, y1, x0, y1, 0, 1, bottom);
+        addEdge(path, x0, y1, x0, y0, -1, 0, left);
+        path.closePath();
+        return path;
+    }
+
+    // Draws one edge from (ax, ay) to (bx, by); the knob bulges along the
+    // outward normal (nx, ny) for a tab and against it for a blank.
+    private void addEdge(Path2D.Double path, double ax, double ay, double bx, double by,
+                         double nx, double ny, int type) {
+        if (type == 0) {
+            path.lineTo(bx, by);
+            return;
+        }
+        double dx = bx - ax;
+        double dy = by - ay;
+        double depth = type * padding * 4.0 / 3.0; // cubic peaks at 3/4 of its control height
+        path.lineTo(ax + dx * 0.38, ay + dy * 0.38);
+        path.curveTo(ax + dx * 0.30 + nx * depth, ay + dy * 0.30 + ny * depth,
+                     ax + dx * 0.70 + nx * depth, ay + dy * 0.70 + ny * depth,
+                     ax + dx * 0.62, ay + dy * 0.62);
+        path.lineTo(bx, by);
+    }
+
+    private BufferedImage renderPiece(BufferedImage source, int row, int col) {
+        BufferedImage piece = new BufferedImage(pieceWidth + 2 * padding, pieceHeight + 2 * padding, BufferedImage.TYPE_INT_ARGB);
+        Shape shape = createShape(row, col);
+        Graphics2D g = piece.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.fill(shape);
+        // Keep only the source pixels that fall inside the shape
+        g.setComposite(AlphaComposite.SrcIn);
+        g.drawImage(source, padding - col * pieceWidth, padding - row * pieceHeight, null);
+        g.setComposite(AlphaComposite.SrcOver);
+        g.setColor(OUTLINE);
+        g.draw(shape);
+        g.dispose();
+        return piece;
+    }
+
+    private static long[] createMask(BufferedImage piece) {
+        int width = piece.getWidth();
+        int height = piece.getHeight();
+        long[] mask = new long[(width * height + 63) >>> 6];
+        WritableRaster alpha = piece.getAlphaRaster();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            alpha.getSamples(0, y, width, 1, 0, row);
+            int base = y * width;
+            for (int x = 0; x < width; x++) {
+                if (row[x] >= ALPHA_THRESHOLD) {
+                    int bit = base + x;
+                    mask[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+        return mask;
+    }
+}
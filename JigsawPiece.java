@@ -0,0 +1,34 @@
+/**
+
+ * File: JigsawPiece.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import javax.swing.*;
+
+/**
+ * A puzzle piece whose clickable area is the opaque part of its image, so
+ * clicks on transparent corners fall through to the piece underneath.
+ */
+class JigsawPiece extends JLabel {
+    private final long[] mask;
+
+    public JigsawPiece(ImageIcon icon, long[] mask) {
+        super(icon);
+        this.mask = mask;
+    }
+
+    @Override
+    public boolean contains(int x, int y) {
+        int width = getWidth();
+        if (x < 0 || y < 0 || x >= width || y >= getHeight()) {
+            return false;
+        }
+        int bit = y * width + x;
+        return (mask[bit >>> 6] & (1L << bit)) != 0;
+    }
+}
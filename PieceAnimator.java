@@ -0,0 +1,145 @@
+/**
+
+ * File: PieceAnimator.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import javax.swing.JComponent;
+import java.util.Arrays;
+
+/**
+ * Eases pieces towards a target position on a fixed 120 Hz time step. State is
+ * kept in primitive arrays sized once per board, so advancing the animations
+ * allocates nothing. Must be used on the event dispatch thread, except for
+ * isIdle, which a render thread may poll.
+ */
+class PieceAnimator {
+    static final long STEP_NANOS = 1_000_000_000L / 120;
+    private static final float STEP_SECONDS = STEP_NANOS / 1e9f;
+    private static final long MAX_CATCH_UP_NANOS = 250_000_000L; // Don't try to replay long stalls
+
+    private JComponent[] targets = new JComponent[0];
+    private float[] fromX = new float[0];
+    private float[] fromY = new float[0];
+    private int[] toX = new int[0];
+    private int[] toY = new int[0];
+    private float[] elapsed = new float[0]; // Negative while an animation is still delayed
+    private float[] duration = new float[0];
+    private boolean[] animating = new boolean[0];
+    private int[] active = new int[0];
+    private volatile int activeCount; // Only written on the event dispatch thread
+    private long accumulator;
+
+    /** Starts over with a new set of pieces, dropping all running animations. */
+    public void reset(JComponent[] pieces) {
+        targets = pieces;
+        int count = pieces.length;
+        if (fromX.length < count) {
+            fromX = new float[count];
+            fromY = new float[count];
+            toX = new int[count];
+            toY = new int[count];
+            elapsed = new float[count];
+            duration = new float[count];
+            animating = new boolean[count];
+            active = new int[count];
+        }
+        Arrays.fill(animating, false);
+        activeCount = 0;
+        accumulator = 0;
+    }
+
+    public void animateTo(int index, int x, int y, float seconds) {
+        animateTo(index, x, y, seconds, 0);
+    }
+
+    /** Moves a piece from where it is now to (x, y), starting after delay seconds. */
+    public void animateTo(int index, int x, int y, float seconds, float delay) {
+        fromX[index] = targets[index].getX();
+        fromY[index] = targets[index].getY();
+        toX[index] = x;
+        toY[index] = y;
+        elapsed[index] = -delay;
+        duration[index] = Math.max(seconds, STEP_SECONDS);
+        if (!animating[index]) {
+            animating[index] = true;
+            active[activeCount++] = index;
+        }
+    }
+
+    /** Stops a piece where it currently is, e.g. when the player grabs it. */
+    public void cancel(int index) {
+        if (!animating[index]) {
+            return;
+        }
+        animating[index] = false;
+        for (int a = 0; a < activeCount; a++) {
+            if (active[a] == index) {
+                active[a] = active[--activeCount];
+                break;
+            }
+        }
+    }
+
+    public boolean isAnimating(int index) {
+        return index < animating.length && animating[index];
+    }
+
+    public int getTargetX(int index) {
+        return toX[index];
+    }
+
+    public int getTargetY(int index) {
+        return toY[index];
+    }
+
+    /** True if no piece is moving, so a frame would look the same as the last one. */
+    public boolean isIdle() {
+        return activeCount == 0;
+    }
+
+    /**
+     * Advances the animations by the given wall-clock time in whole fixed
+     * steps, carrying the remainder to the next call, and moves the pieces.
+     */
+    public void advance(long nanos) {
+        if (activeCount == 0) {
+            accumulator = 0;
+            return;
+        }
+        accumulator += Math.min(nanos, MAX_CATCH_UP_NANOS);
+        boolean stepped = false;
+        while (accumulator >= STEP_NANOS) {
+            for (int a = 0; a < activeCount; a++) {
+                elapsed[active[a]] += STEP_SECONDS;
+            }
+            accumulator -= STEP_NANOS;
+            stepped = true;
+        }
+        if (stepped) {
+            apply();
+        }
+    }
+
+    private void apply() {
+        int a = 0;
+        while (a < activeCount) {
+            int i = active[a];
+            float t = elapsed[i] <= 0 ? 0 : Math.min(1f, elapsed[i] / duration[i]);
+            float u = 1 - t;
+            float eased = 1 - u * u * u; // Ease out cubic
+            targets[i].setLocation(Math.round(fromX[i] + (toX[i] - fromX[i]) * eased),
+                                   Math.round(fromY[i] + (toY[i] - fromY[i]) * eased));
+            if (t >= 1) {
+                animating[i] = false;
+                active[a] = active[--activeCount];
+            } else {
+                a++;
+            }
+        }
+    }
+}
@@ -25,45 +25,71 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.nio.file.Path;
 import net.coobird.thumbnailator.Thumbnails;
 import net.coobird.thumbnailator.name.Rename;
 import javax.imageio.ImageIO;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
-public class PuzzleGame extends JFrame {
+public class PuzzleGame extends JFrame implements CoopListener {
     private static final String SOUND_PATH = "/sounds/";
     private static final String IMAGE_PATH = "/images/";
-    private static final String BORDER_IMAGE = "/images/border.png";
-    private static final String BACKGROUND_IMAGE = "/images/background.png";
-    private final Map<String, BufferedImage> imageCache = new HashMap<>();
+    private static final String BORDER_IMAGE = "border.png";
+    private static final String BACKGROUND_IMAGE = "background.png";
+    // Shared by every window so returning to the main menu decodes nothing again
+    private static final Map<String, BufferedImage> imageCache = new HashMap<>();
     private PuzzlePanel panel;
     private JLabel[] pieces;
     private Point[] correctPositions;
     private List<Point> initialPositions;
     private int level = 1;
-    private int[] levelPieces = {4, 9, 16, 25};
+    private int[] levelPieces = PuzzleRules.LEVEL_PIECES;
     private JLabel timerLabel;
     private int timeLeft = 60;
     private static final int IMG_WIDTH = 400;
     private static final int IMG_HEIGHT = 400;
+    private static final int LIBRARY_THUMBNAIL_SIZE = 160;
     private int highScore = 0;
     private JLabel highScoreLabel;
     private String imageFile = "1.png"; // Default image file
     private Clip popSound;
     private Clip victorySound;
     private Clip finalVictorySound;
+    private boolean jigsawMode = false;
+    private static CoopClient coop; // Shared co-op session, survives returning to the main menu
+    private int[] pieceOwners;
+    private Point boardOrigin = new Point(); // Co-op positions are sent relative to the board
+    private int assistPiece = -1; // Co-op: waiting for the host to grant this piece to Assist
+    private Point assistTarget;
+    private CompletableFuture<EdgeCompatibility> edgeCompatibility;
+    private static final int ASSIST_CANDIDATES = 4;
+    // -Dpuzzle.activeRendering=true animates snaps, returns and shuffles
+    private static final boolean ACTIVE_RENDERING = Boolean.getBoolean("puzzle.activeRendering");
+    private static final float SNAP_SECONDS = 0.15f;
+    private static final float RETURN_SECONDS = 0.35f;
+    private static final float SHUFFLE_SECONDS = 0.6f;
+    private static final float SHUFFLE_STAGGER_SECONDS = 0.4f;
+    private PieceAnimator animator;
+    private ActiveRenderer activeRenderer;
+    private Timer animationTimer;
+    private long lastAnimationTick;
     
 
     public PuzzleGame() {
         initUI();
         initSound();
+        if (coop != null) {
+            coop.setListener(this);
+        }
     }
 
     private void initUI() {
@@ -83,6 +109,8 @@ public class PuzzleGame extends JFrame {
 
         ImageOption[] imageOptions = createImageOptions();
         addImageOptionButtons(startupPanel, imageOptions);
+        startupPanel.add(createLibraryButton());
+        startupPanel.add(createJigsawModeCheckBox());
 
         createStartupFrame(startupPanel);
     }
@@ -105,14 +133,10 @@ public class PuzzleGame extends JFrame {
     }
 
     private JButton createImageOptionButton(ImageOption option) {
-        URL imageUrl = getClass().getResource(IMAGE_PATH + option.getFile());
-        if (imageUrl == null) {
-            System.err.println("Image not found: " + option.getFile());
+        ImageIcon icon = option.getIcon();
+        if (icon == null) {
             return null;
         }
-        ImageIcon icon = new ImageIcon(imageUrl);
-        Image img = icon.getImage().getScaledInstance(200, 200, Image.SCALE_SMOOTH);
-        icon = new ImageIcon(img);
     
         JButton button = new JButton(option.getName(), icon);
         styleButton(button);
@@ -120,6 +144,97 @@ public class PuzzleGame extends JFrame {
         return button;
     }
 
+    private JButton createLibraryButton() {
+        JButton button = new JButton("Image Library...");
+        styleButton(button);
+        if (coop != null) {
+            // The other players could not open a picture from this computer
+            button.setEnabled(false);
+            button.setToolTipText("Co-op games use the built-in pictures");
+        }
+        button.addActionListener(e -> {
+            String defaultDirectory = System.getProperty("puzzle.library", System.getProperty("user.home"));
+            JFileChooser chooser = new JFileChooser(defaultDirectory);
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showOpenDialog(button) == JFileChooser.APPROVE_OPTION) {
+                showImageLibrary(chooser.getSelectedFile().toPath());
+            }
+        });
+        return button;
+    }
+
+    private void showImageLibrary(Path directory) {
+        JFrame frame = new JFrame("Image Library - " + directory);
+        ImageLibrary library = new ImageLibrary(directory,
+            file -> new ImageOption(file.getFileName().toString(), file.toAbsolutePath().toString()));
+        JList<ImageOption> list = new JList<>(library);
+        // Fixed cell sizes let the list lay out 10,000 cells without rendering any of them
+        list.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        list.setVisibleRowCount(-1);
+        list.setFixedCellWidth(LIBRARY_THUMBNAIL_SIZE + 20);
+        list.setFixedCellHeight(LIBRARY_THUMBNAIL_SIZE + 40);
+        list.setBackground(Color.LIGHT_GRAY);
+
+        ThumbnailLoader thumbnails = new ThumbnailLoader(list, LIBRARY_THUMBNAIL_SIZE, 300);
+        ImageOptionRenderer renderer = new ImageOptionRenderer(thumbnails);
+        renderer.setVerticalTextPosition(SwingConstants.BOTTOM);
+        renderer.setHorizontalTextPosition(SwingConstants.CENTER);
+        renderer.setHorizontalAlignment(SwingConstants.CENTER);
+        list.setCellRenderer(renderer);
+
+        JScrollPane scrollPane = new JScrollPane(list);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(40);
+        scrollPane.getViewport().addChangeListener(e ->
+            thumbnails.cancelOutside(list.getFirstVisibleIndex(), list.getLastVisibleIndex()));
+
+        Runnable open = () -> {
+            ImageOption option = list.getSelectedValue();
+            if (option != null) {
+                frame.dispose();
+                selectImageAndStart(option);
+            }
+        };
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    open.run();
+                }
+            }
+        });
+        list.getInputMap().put(KeyStroke.getKeyStroke("ENTER"), "openImage");
+        list.getActionMap().put("openImage", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                open.run();
+            }
+        });
+
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                library.close();
+                thumbnails.shutdown();
+            }
+        });
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.add(scrollPane);
+        frame.setSize(900, 700);
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+    }
+
+    private JCheckBox createJigsawModeCheckBox() {
+        JCheckBox checkBox = new JCheckBox("Jigsaw pieces", jigsawMode);
+        checkBox.setFont(new Font("Serif", Font.BOLD, 16));
+        checkBox.setForeground(Color.WHITE);
+        checkBox.setBackground(new Color(51, 51, 51));
+        checkBox.setFocusPainted(false);
+        checkBox.setHorizontalAlignment(SwingConstants.CENTER);
+        checkBox.addActionListener(e -> jigsawMode = checkBox.isSelected());
+        return checkBox;
+    }
+
     private void styleButton(JButton button) {
         button.setVerticalTextPosition(SwingConstants.BOTTOM);
         button.setHorizontalTextPosition(SwingConstants.CENTER);
@@ -145,6 +260,11 @@ public class PuzzleGame extends JFrame {
 
     private void selectImageAndStart(ImageOption option) {
         imageFile = option.getFile();
+        if (coop != null) {
+            // The host deals the board to every player, this one included
+            coop.requestBoard(1, jigsawMode, imageFile, CoopServer.NEW_BOARD);
+            return;
+        }
         startGame();
         disposeStartupFrame();
     }
@@ -190,27 +310,31 @@ public class PuzzleGame extends JFrame {
         public ImageIcon getIcon() {
             if (icon == null) {
                 // Lazy loading of the image
-                URL imageUrl = getClass().getResource(IMAGE_PATH + file);
-                if (imageUrl != null) {
-                    ImageIcon originalIcon = new ImageIcon(imageUrl);
-                    Image scaledImage = originalIcon.getImage().getScaledInstance(200, 200, Image.SCALE_SMOOTH);
-                    icon = new ImageIcon(scaledImage);
-                } else {
-                    System.err.println("Image not found: " + file);
+                BufferedImage image = getCachedImage(file);
+                if (image != null) {
+                    icon = new ImageIcon(image.getScaledInstance(200, 200, Image.SCALE_SMOOTH));
                 }
             }
             return icon;
         }
     }
     class ImageOptionRenderer extends JLabel implements ListCellRenderer<ImageOption> {
+        private ThumbnailLoader thumbnails;
+
         public ImageOptionRenderer() {
             setOpaque(true);
         }
 
+        // Thumbnails are decoded in the background instead of by getIcon()
+        public ImageOptionRenderer(ThumbnailLoader thumbnails) {
+            this();
+            this.thumbnails = thumbnails;
+        }
+
         @Override
         public Component getListCellRendererComponent(JList<? extends ImageOption> list, ImageOption value, int index, boolean isSelected, boolean cellHasFocus) {
             setText(value.getName());
-            setIcon(value.getIcon());
+            setIcon(thumbnails != null ? thumbnails.getThumbnail(value, index) : value.getIcon());
 
             Color background = isSelected ? Color.DARK_GRAY : Color.LIGHT_GRAY;
             Color foreground = isSelected ? Color.WHITE : Color.BLACK;
@@ -223,13 +347,7 @@ public class PuzzleGame extends JFrame {
     }
 
     public void startGame() {
-        BufferedImage borderImage = null;
-        try {
-            borderImage = ImageIO.read(getClass().getResource(BORDER_IMAGE));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        panel = new PuzzlePanel(level, borderImage);
+        panel = new PuzzlePanel(level, getCachedImage(BORDER_IMAGE), getCachedImage(BACKGROUND_IMAGE));
         panel.setDoubleBuffered(true);
         panel.setLayout(null);
         JLabel title = new JLabel("The Pieces");
@@ -268,7 +386,7 @@ public class PuzzleGame extends JFrame {
             @Override
             public void actionPerformed(ActionEvent e) {
                 // Reset the level
-                resetPieces();
+                changeBoard(level, CoopServer.NEW_BOARD);
             }
         });
         resetButton.setBounds(340, 10, 80, 20);
@@ -321,21 +439,50 @@ public class PuzzleGame extends JFrame {
     hintButton.setBounds(560, 10, 80, 20); // Adjust the x position to place it next to the mainMenuButton
     panel.add(hintButton);
 
+        JButton assistButton = new JButton("Assist");
+        assistButton.setFont(new Font("Arial", Font.BOLD, 14));
+        assistButton.setBackground(new Color(70, 130, 180));
+        assistButton.setForeground(Color.WHITE);
+        assistButton.setFocusPainted(false);
+        assistButton.setBorderPainted(false);
+        assistButton.addMouseListener(new MouseAdapter() {
+            public void mouseEntered(MouseEvent evt) {
+                assistButton.setBackground(new Color(100, 150, 200));
+            }
+            public void mouseExited(MouseEvent evt) {
+                assistButton.setBackground(new Color(70, 130, 180));
+            }
+        });
+        assistButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                assist();
+            }
+        });
+        assistButton.setBounds(650, 10, 90, 20);
+        panel.add(assistButton);
+
         Timer timer = new Timer(1000, new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
+                if (timeLeft <= 0) {
+                    return; // Co-op: the host ends the level for everybody
+                }
                 timeLeft--;
                 timerLabel.setText("Time left: " + timeLeft);
-                if (timeLeft <= 0) {
+                if (timeLeft <= 0 && coop == null) {
                     ((Timer) e.getSource()).stop();
                     showVictoryDialog1();
-                    level = 1;
+                    level = PuzzleRules.levelAfterTimeout(level);
                     resetPieces();
                 }
             }
         });
         timer.start();
 
+        if (ACTIVE_RENDERING) {
+            animator = new PieceAnimator();
+        }
         addPieces();
         add(panel);
         setTitle("Puzzle Game");
@@ -344,6 +491,37 @@ public class PuzzleGame extends JFrame {
         setDefaultCloseOperation(EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
         setVisible(true);
+        startAnimation();
+    }
+
+    private void startAnimation() {
+        if (animator == null) {
+            return;
+        }
+        if (ActiveRenderer.isSupported(this)) {
+            activeRenderer = new ActiveRenderer(this, animator);
+            activeRenderer.start();
+        } else {
+            // No accelerated back buffer: run the same animations from a Swing timer
+            lastAnimationTick = System.nanoTime();
+            animationTimer = new Timer(1000 / 60, e -> {
+                long now = System.nanoTime();
+                animator.advance(now - lastAnimationTick);
+                lastAnimationTick = now;
+            });
+            animationTimer.start();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (activeRenderer != null) {
+            activeRenderer.stop();
+        }
+        if (animationTimer != null) {
+            animationTimer.stop();
+        }
+        super.dispose();
     }
     public void showFullImage() {
         // Create a new JFrame to display the full image
@@ -375,21 +553,13 @@ public class PuzzleGame extends JFrame {
     }
     public void addPieces() {
         pieces = new JLabel[levelPieces[level - 1]];
-        correctPositions = new Point[levelPieces[level - 1]];
     
         int piecesPerRow = (int) Math.sqrt(levelPieces[level - 1]);
     
-        initialPositions = new ArrayList<>();
-        int spacing = 40; // The space between the pieces
-        int initialPiecesPerRow = (int) Math.ceil(Math.sqrt(levelPieces[level - 1])); // Calculate the number of pieces per row for the initial positions
-        int verticalOffset1 = (Toolkit.getDefaultToolkit().getScreenSize().height - 400) / 2; // Calculate the y-coordinate of the red area box
-        for (int i = 0; i < levelPieces[level - 1]; i++) {
-            int x = (i % initialPiecesPerRow) * (spacing + 60); // Calculate the x position
-            int y = (i / initialPiecesPerRow) * (spacing + 60); // Calculate the y position
-            initialPositions.add(new Point(spacing + x, verticalOffset1 + y));
-        }
-        // Shuffle the initial positions
-        Collections.shuffle(initialPositions);
+        Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+        initialPositions = PuzzleRules.shuffledStartPositions(levelPieces[level - 1], PuzzleRules.startAreaTop(screen.height), createRandom());
+        pieceOwners = new int[levelPieces[level - 1]];
+        Arrays.fill(pieceOwners, -1);
     
         BufferedImage img = getCachedImage(imageFile);
         if (img == null) {
@@ -403,12 +573,26 @@ public class PuzzleGame extends JFrame {
         Graphics2D g = img.createGraphics();
         g.drawImage(scaledImage, 0, 0, null);
         g.dispose();
+
+        // Score the tile edges in the background so Assist can answer instantly
+        BufferedImage tiles = img;
+        edgeCompatibility = CompletableFuture.supplyAsync(
+            () -> EdgeCompatibility.compute(tiles, piecesPerRow, piecesPerRow, ASSIST_CANDIDATES));
     
         int pieceWidth = img.getWidth() / piecesPerRow;
         int pieceHeight = img.getHeight() / piecesPerRow;
+
+        // Jigsaw pieces are drawn with room for their tabs around the cell
+        JigsawCutter cutter = null;
+        int padding = 0;
+        if (jigsawMode) {
+            cutter = new JigsawCutter(piecesPerRow, piecesPerRow, pieceWidth, pieceHeight, createRandom());
+            cutter.cut(img);
+            padding = cutter.getPadding();
+        }
     
-        int offset = (Toolkit.getDefaultToolkit().getScreenSize().width - IMG_WIDTH) / 2;
-        int verticalOffset = (Toolkit.getDefaultToolkit().getScreenSize().height - 450) / 2;
+        boardOrigin = PuzzleRules.boardOrigin(screen.width, screen.height);
+        correctPositions = PuzzleRules.correctPositions(level, boardOrigin, padding);
         for (int i = 0; i < levelPieces[level - 1]; i++) {
             int x = (i % piecesPerRow) * pieceWidth;
             int y = (i / piecesPerRow) * pieceHeight;
@@ -420,9 +604,13 @@ public class PuzzleGame extends JFrame {
                 pieceHeight = img.getHeight() - y;
             }
     
-            BufferedImage subImg = img.getSubimage(x, y, pieceWidth, pieceHeight);
-            ImageIcon icon = new ImageIcon(subImg);
-            pieces[i] = new JLabel(icon);
+            if (cutter != null) {
+                pieces[i] = new JigsawPiece(new ImageIcon(cutter.getImage(i)), cutter.getMask(i));
+            } else {
+                BufferedImage subImg = img.getSubimage(x, y, pieceWidth, pieceHeight);
+                pieces[i] = new JLabel(new ImageIcon(subImg));
+            }
+            Icon icon = pieces[i].getIcon();
             pieces[i].setSize(icon.getIconWidth(), icon.getIconHeight());
     
             // Get the border's insets
@@ -431,8 +619,6 @@ public class PuzzleGame extends JFrame {
             // Set the location of the pieces
             pieces[i].setLocation(initialPositions.get(i).x - insets.left, initialPositions.get(i).y - insets.top);
     
-            correctPositions[i] = new Point(offset + pieces[i].getWidth() * (i % piecesPerRow), verticalOffset + pieces[i].getHeight() * (i / piecesPerRow));
-    
             final int index = i;
     
             MouseAdapter ma = new MouseAdapter() {
@@ -441,12 +627,29 @@ public class PuzzleGame extends JFrame {
 
                 @Override
                 public void mousePressed(MouseEvent e) {
+                    if (isHeldByOtherPlayer(index)) {
+                        offset = null;
+                        return;
+                    }
+                    if (animator != null) {
+                        animator.cancel(index);
+                    }
                     offset = e.getPoint();
                     oldBounds = new Rectangle(pieces[index].getBounds());
+                    if (coop != null) {
+                        if (index == assistPiece) {
+                            assistPiece = -1; // The drag takes over the pending Assist
+                        }
+                        pieceOwners[index] = coop.getPlayerId();
+                        coop.grab(index);
+                    }
                 }
 
                 @Override
                 public void mouseDragged(MouseEvent e) {
+                    if (offset == null || isHeldByOtherPlayer(index)) {
+                        return;
+                    }
                     Point point = e.getPoint();
                     JLabel label = (JLabel) e.getSource();
                     int newX = label.getX() + point.x - offset.x;
@@ -464,25 +667,23 @@ public class PuzzleGame extends JFrame {
                 
                     // Update oldBounds for the next call
                     oldBounds = newBounds;
+
+                    if (coop != null) {
+                        coop.move(index, newX - boardOrigin.x, newY - boardOrigin.y);
+                    }
                 }
 
 
                 @Override
                 public void mouseReleased(MouseEvent e) {
-                    JLabel label = (JLabel) e.getSource();
-                    boolean isCorrect = false;
-                    for (Point correctPosition : correctPositions) {
-                        int dx = Math.abs(label.getX() - correctPosition.x);
-                        int dy = Math.abs(label.getY() - correctPosition.y);
-                        if (dx < 50 && dy < 50) {
-                            label.setLocation(correctPosition);
-                            isCorrect = true;
-                            break;
-                        }
+                    if (offset == null || isHeldByOtherPlayer(index)) {
+                        return; // Another player owns this piece
                     }
-                    if (!isCorrect) {
-                        label.setLocation(initialPositions.get(index));
-                    } else {
+                    JLabel label = (JLabel) e.getSource();
+                    int slot = PuzzleRules.findSnapSlot(label.getX(), label.getY(), correctPositions);
+                    Point target = slot < 0 ? initialPositions.get(index) : correctPositions[slot];
+                    movePiece(index, target, slot < 0 ? RETURN_SECONDS : SNAP_SECONDS);
+                    if (slot >= 0) {
                         if (popSound != null) {
                             popSound.setFramePosition(0);
                             popSound.start();
@@ -490,17 +691,12 @@ public class PuzzleGame extends JFrame {
                             System.out.println("popSound is null");
                         }
                     }
-                
-                    if (checkSolution()) {
-                        if(level > highScore) {
-                            highScore = level * 3;
-                            highScoreLabel.setText("High Score: " + highScore);
-                        }
-                        resetPieces();
-
-                        
-
+                    if (coop != null) {
+                        pieceOwners[index] = -1;
+                        sendDrop(index, target);
                     }
+                
+                    checkSolution();
                 }
             };
     
@@ -509,25 +705,335 @@ public class PuzzleGame extends JFrame {
 
             panel.add(pieces[i]);
         }
+
+        if (animator != null) {
+            // Deal the pieces out from the finished picture to their shuffled places
+            animator.reset(pieces);
+            for (int i = 0; i < pieces.length; i++) {
+                Point start = pieces[i].getLocation();
+                pieces[i].setLocation(correctPositions[i]);
+                animator.animateTo(i, start.x, start.y, SHUFFLE_SECONDS, SHUFFLE_STAGGER_SECONDS * i / pieces.length);
+            }
+        }
+    }
+
+    /**
+     * Places one piece next to a piece that is already in a slot, using the
+     * edge compatibility of the tiles rather than the solution. Mutual best
+     * matches win, then the lowest dissimilarity. In co-op the piece only
+     * moves once the host has granted it, see pieceGrabbed.
+     */
+    public void assist() {
+        if (assistPiece >= 0) {
+            return; // Still waiting for the host
+        }
+        EdgeCompatibility compatibility = edgeCompatibility != null ? edgeCompatibility.getNow(null) : null;
+        if (compatibility == null) {
+            Toolkit.getDefaultToolkit().beep(); // Still scoring the edges
+            return;
+        }
+        int gridSize = (int) Math.sqrt(pieces.length);
+        int[] occupant = new int[pieces.length];
+        boolean[] placed = new boolean[pieces.length];
+        Arrays.fill(occupant, -1);
+        for (int i = 0; i < pieces.length; i++) {
+            for (int slot = 0; slot < correctPositions.length; slot++) {
+                if (occupant[slot] < 0 && piecePosition(i).equals(correctPositions[slot])) {
+                    occupant[slot] = i;
+                    placed[i] = true;
+                    break;
+                }
+            }
+        }
+
+        int bestPiece = -1;
+        int bestSlot = -1;
+        int bestScore = Integer.MAX_VALUE;
+        boolean bestIsBuddy = false;
+        for (int slot = 0; slot < occupant.length; slot++) {
+            int tile = occupant[slot];
+            if (tile < 0) {
+                continue;
+            }
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbour = neighbourSlot(slot, direction, gridSize);
+                if (neighbour < 0 || occupant[neighbour] >= 0) {
+                    continue;
+                }
+                for (int rank = 0; rank < compatibility.getK(); rank++) {
+                    int candidate = compatibility.candidate(tile, direction, rank);
+                    if (candidate < 0 || placed[candidate] || isHeldByOtherPlayer(candidate)) {
+                        continue;
+                    }
+                    boolean buddy = rank == 0 && compatibility.isBestBuddy(tile, direction);
+                    int score = compatibility.score(tile, direction, rank);
+                    if ((buddy && !bestIsBuddy) || (buddy == bestIsBuddy && score < bestScore)) {
+                        bestPiece = candidate;
+                        bestSlot = neighbour;
+                        bestScore = score;
+                        bestIsBuddy = buddy;
+                    }
+                    break;
+                }
+            }
+        }
+
+        if (bestPiece < 0 && occupant[0] < 0) {
+            // Nothing to build on: start with the tile that fits worst on its left and top
+            long worst = -1;
+            for (int tile = 0; tile < pieces.length; tile++) {
+                if (placed[tile] || isHeldByOtherPlayer(tile)) {
+                    continue;
+                }
+                long score = (long) compatibility.score(tile, EdgeCompatibility.LEFT, 0) + compatibility.score(tile, EdgeCompatibility.TOP, 0);
+                if (score > worst) {
+                    worst = score;
+                    bestPiece = tile;
+                    bestSlot = 0;
+                }
+            }
+        }
+
+        if (bestPiece < 0) {
+            Toolkit.getDefaultToolkit().beep();
+            return;
+        }
+        if (coop != null) {
+            assistPiece = bestPiece;
+            assistTarget = correctPositions[bestSlot];
+            coop.grab(bestPiece);
+            return;
+        }
+        placeAssisted(bestPiece, correctPositions[bestSlot]);
+    }
+
+    private void placeAssisted(int piece, Point target) {
+        movePiece(piece, target, SNAP_SECONDS);
+        if (popSound != null) {
+            popSound.setFramePosition(0);
+            popSound.start();
+        }
+        if (coop != null) {
+            pieceOwners[piece] = -1;
+            sendDrop(piece, target);
+        }
+        checkSolution();
+    }
+
+    // Called once the host has granted the piece Assist asked for
+    private void assistGranted(int piece) {
+        Point target = assistTarget;
+        assistPiece = -1;
+        assistTarget = null;
+        for (int i = 0; i < pieces.length; i++) {
+            if (i != piece && piecePosition(i).equals(target)) {
+                // Somebody filled the slot while the grab was on its way: hand the piece back
+                Point position = piecePosition(piece);
+                pieceOwners[piece] = -1;
+                sendDrop(piece, position);
+                Toolkit.getDefaultToolkit().beep();
+                return;
+            }
+        }
+        placeAssisted(piece, target);
+    }
+
+    // Slots are sent relative to the board; the tray is laid out from the edge
+    // of every player's own screen, so a piece back there is sent as IN_TRAY
+    private void sendDrop(int piece, Point target) {
+        if (target.equals(initialPositions.get(piece))) {
+            coop.drop(piece, CoopServer.IN_TRAY, 0);
+        } else {
+            coop.drop(piece, target.x - boardOrigin.x, target.y - boardOrigin.y);
+        }
+    }
+
+    private void movePiece(int piece, Point target, float seconds) {
+        if (animator != null) {
+            animator.animateTo(piece, target.x, target.y, seconds);
+        } else {
+            pieces[piece].setLocation(target);
+        }
+    }
+
+    // Where a piece is, or will be once its animation finishes
+    private Point piecePosition(int piece) {
+        if (animator != null && animator.isAnimating(piece)) {
+            return new Point(animator.getTargetX(piece), animator.getTargetY(piece));
+        }
+        return pieces[piece].getLocation();
+    }
+
+    private static int neighbourSlot(int slot, int direction, int gridSize) {
+        int row = slot / gridSize;
+        int col = slot % gridSize;
+        switch (direction) {
+            case EdgeCompatibility.RIGHT:
+                return col + 1 < gridSize ? slot + 1 : -1;
+            case EdgeCompatibility.BOTTOM:
+                return row + 1 < gridSize ? slot + gridSize : -1;
+            case EdgeCompatibility.LEFT:
+                return col > 0 ? slot - 1 : -1;
+            default:
+                return row > 0 ? slot - gridSize : -1;
+        }
+    }
+
+    private Random createRandom() {
+        // Co-op players get the board's seed from the host so everybody gets the same board
+        return coop != null ? new Random(coop.getBoard().getSeed()) : new Random();
+    }
+
+    private boolean isHeldByOtherPlayer(int piece) {
+        return coop != null && pieceOwners[piece] != -1 && pieceOwners[piece] != coop.getPlayerId();
+    }
+
+    private boolean isCurrentPiece(int piece) {
+        return pieces != null && piece < pieces.length && pieces[piece].getParent() == panel;
+    }
+
+    @Override
+    public void boardChanged(CoopClient.Board board) {
+        if (panel == null && !board.isPlayable()) {
+            return; // On the main menu and nobody is playing yet
+        }
+        imageFile = board.getImage();
+        jigsawMode = board.isJigsaw();
+        assistPiece = -1; // A grant for the old board will never arrive
+        assistTarget = null;
+        if (panel == null) {
+            // Join the board everybody else is on
+            level = board.getLevel();
+            startGame();
+        } else {
+            applyBoard(board.getLevel(), board.getReason());
+        }
+        if (board.isPlayable()) {
+            timeLeft = board.getSecondsLeft();
+            timerLabel.setText("Time left: " + timeLeft);
+        }
+    }
+
+    @Override
+    public void pieceGrabbed(int piece, int player) {
+        if (isCurrentPiece(piece)) {
+            pieceOwners[piece] = player;
+            if (piece == assistPiece && player == coop.getPlayerId()) {
+                assistGranted(piece);
+            }
+        }
+    }
+
+    @Override
+    public void grabDenied(int piece) {
+        // The owner's grant has already arrived and their moves will place the piece
+        if (piece == assistPiece) {
+            assistPiece = -1;
+            assistTarget = null;
+            Toolkit.getDefaultToolkit().beep();
+        }
+    }
+
+    @Override
+    public void pieceReleased(int piece) {
+        if (isCurrentPiece(piece)) {
+            pieceOwners[piece] = -1;
+        }
+    }
+
+    @Override
+    public void pieceMoved(int piece, int x, int y) {
+        if (isCurrentPiece(piece)) {
+            if (animator != null) {
+                animator.cancel(piece);
+            }
+            Rectangle oldBounds = pieces[piece].getBounds();
+            if (x == CoopServer.IN_TRAY) {
+                pieces[piece].setLocation(initialPositions.get(piece));
+            } else {
+                // A player with a bigger screen may drag further out than this one reaches
+                int maxX = Math.max(0, panel.getWidth() - pieces[piece].getWidth());
+                int maxY = Math.max(0, panel.getHeight() - pieces[piece].getHeight());
+                pieces[piece].setLocation(Math.max(0, Math.min(boardOrigin.x + x, maxX)),
+                                          Math.max(0, Math.min(boardOrigin.y + y, maxY)));
+            }
+            panel.repaint(oldBounds.union(pieces[piece].getBounds()));
+        }
+    }
+
+    @Override
+    public void pieceDropped(int piece, int x, int y) {
+        if (isCurrentPiece(piece)) {
+            pieceOwners[piece] = -1;
+            pieceMoved(piece, x, y);
+            checkSolution();
+        }
+    }
+
+    @Override
+    public void sessionClosed(String reason) {
+        // Carry on alone with the board as it is
+        coop = null;
+        assistPiece = -1;
+        assistTarget = null;
+        if (pieceOwners != null) {
+            Arrays.fill(pieceOwners, -1);
+        }
+        JOptionPane.showMessageDialog(this, reason + ". You can keep playing alone.", "Co-op session ended",
+            JOptionPane.WARNING_MESSAGE);
+        if (panel != null && timeLeft <= 0) {
+            // The host was about to end the level and no longer will
+            applyBoard(PuzzleRules.levelAfterTimeout(level), CoopServer.TIMED_OUT);
+        }
     }
 
     private BufferedImage getCachedImage(String path) {
         if (imageCache.containsKey(path)) {
             return imageCache.get(path);
         } else {
-            try {
-                BufferedImage image = ImageIO.read(getClass().getResourceAsStream(IMAGE_PATH + path));
-                imageCache.put(path, image);
+            // Prefer the pre-decoded asset pack, fall back to the loose PNG
+            AssetPack pack = AssetPack.shared();
+            BufferedImage image = pack != null ? pack.readImage(IMAGE_PATH + path) : null;
+            File file = new File(path);
+            if (image == null && file.isAbsolute()) {
+                // Picked from the image library: read at about the size the board
+                // needs and not cached, so a large photo doesn't stay in memory
+                // and a file that changed on disk is read again
+                try {
+                    image = ThumbnailLoader.readSubsampled(file, IMG_WIDTH);
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                }
+                if (image == null) {
+                    System.err.println("Image not readable: " + path);
+                }
                 return image;
-            } catch (IOException e) {
-                e.printStackTrace();
-                return null;
             }
+            if (image == null) {
+                InputStream in = getClass().getResourceAsStream(IMAGE_PATH + path);
+                if (in == null) {
+                    System.err.println("Image not found: " + path);
+                    return null;
+                }
+                try {
+                    image = ImageIO.read(in);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            }
+            imageCache.put(path, image);
+            return image;
         }
     }
 
     private Clip loadSound(String soundFileName) {
         try {
+            AssetPack pack = AssetPack.shared();
+            Clip packed = pack != null ? pack.readClip(SOUND_PATH + soundFileName) : null;
+            if (packed != null) {
+                return packed;
+            }
             InputStream audioSrc = getClass().getResourceAsStream(SOUND_PATH + soundFileName);
             BufferedInputStream bufferedIn = new BufferedInputStream(audioSrc);
             AudioInputStream audioInputStream = AudioSystem.getAudioInputStream(bufferedIn);
@@ -570,7 +1076,7 @@ public class PuzzleGame extends JFrame {
         victoryDialog.setLayout(null); // Use a null layout
     
         // Load the image
-        ImageIcon originalIcon = new ImageIcon(getClass().getResource("/images/victory.png"));
+        ImageIcon originalIcon = new ImageIcon(getCachedImage("victory.png"));
     
         // Get the image's width and height
         int imgWidth = originalIcon.getIconWidth();
@@ -619,7 +1125,7 @@ public void gameCompleted() {
         victoryDialog.setLayout(null); // Use a null layout
     
         // Load the image
-        ImageIcon originalIcon = new ImageIcon(getClass().getResource("/images/final.png"));
+        ImageIcon originalIcon = new ImageIcon(getCachedImage("final.png"));
     
         // Get the image's width and height
         int imgWidth = originalIcon.getIconWidth();
@@ -669,7 +1175,7 @@ public void gameCompleted() {
         victoryDialog.setLayout(null); // Use a null layout
     
         // Load the image
-        ImageIcon originalIcon = new ImageIcon(getClass().getResource("/images/lost.png"));
+        ImageIcon originalIcon = new ImageIcon(getCachedImage("lost.png"));
     
         // Get the image's width and height
         int imgWidth = originalIcon.getIconWidth();
@@ -707,27 +1213,46 @@ public void gameCompleted() {
 
 
     public boolean checkSolution() {
+        Point[] positions = new Point[pieces.length];
         for (int i = 0; i < pieces.length; i++) {
-            if (!pieces[i].getLocation().equals(correctPositions[i])) {
-                return false; // Solution is incorrect
-            }
+            positions[i] = piecePosition(i);
+        }
+        if (!PuzzleRules.isSolved(positions, correctPositions)) {
+            return false; // Solution is incorrect
         }
     
         // If we reach this point, all pieces are in the correct position
-        if (victorySound != null) {
-            victorySound.setFramePosition(0);
-            victorySound.start();
-        }
+        changeBoard(PuzzleRules.levelAfterSolving(level), CoopServer.SOLVED);
     
-            if(level > highScore) {
-                highScore = level * 3;
-                highScoreLabel.setText("High Score: " + highScore);
+        return true; // Solution is correct
+    }
+
+    // Alone the board changes right away; in co-op the host decides and deals
+    // the new board to every player, and applyBoard runs when it arrives
+    private void changeBoard(int newLevel, byte reason) {
+        if (coop != null) {
+            coop.requestBoard(newLevel, jigsawMode, imageFile, reason);
+        } else {
+            applyBoard(newLevel, reason);
+        }
+    }
+
+    private void applyBoard(int newLevel, byte reason) {
+        if (reason == CoopServer.SOLVED) {
+            if (victorySound != null) {
+                victorySound.setFramePosition(0);
+                victorySound.start();
             }
-            level++;
-            resetPieces();
+            highScore = PuzzleRules.highScoreAfter(level, highScore);
+            highScoreLabel.setText("High Score: " + highScore);
+        } else if (reason == CoopServer.TIMED_OUT) {
+            showVictoryDialog1();
+        }
+        level = newLevel;
+        resetPieces();
+        if (reason == CoopServer.SOLVED) {
             showVictoryDialog();
-    
-        return true; // Solution is correct
+        }
     }
 
 
@@ -735,7 +1260,7 @@ public void gameCompleted() {
         for (JLabel piece : pieces) {
             panel.remove(piece);
         }
-        if (level > levelPieces.length) {
+        if (PuzzleRules.isGameCompleted(level)) {
             if (finalVictorySound != null) {
                 finalVictorySound.setFramePosition(0);
                 finalVictorySound.start();
@@ -744,7 +1269,7 @@ public void gameCompleted() {
             dispose();
             new PuzzleGame();
         } else {
-            timeLeft = 60 + level * 20;
+            timeLeft = PuzzleRules.timeForLevel(level);
             timerLabel.setText("Time left: " + timeLeft);
             panel.setLevel(level);
             addPieces();
@@ -752,10 +1277,35 @@ public void gameCompleted() {
             panel.repaint();
         }
     }
+    // --host [port] starts a co-op session, --join host[:port] joins one
+    private static void startCoopSession(String[] args) throws IOException {
+        if (args.length == 0) {
+            return;
+        }
+        if (args[0].equals("--host")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : CoopServer.DEFAULT_PORT;
+            CoopServer server = new CoopServer(port, new Random().nextLong());
+            server.start();
+            coop = CoopClient.connect("localhost", server.getPort());
+        } else if (args[0].equals("--join") && args.length > 1) {
+            String[] address = args[1].split(":");
+            int port = address.length > 1 ? Integer.parseInt(address[1]) : CoopServer.DEFAULT_PORT;
+            coop = CoopClient.connect(address[0], port);
+        }
+    }
+
     public static void main(String[] args) {
+        try {
+            startCoopSession(args);
+        } catch (IOException e) {
+            System.err.println("Could not start co-op session: " + e.getMessage());
+        }
         EventQueue.invokeLater(() -> {
             PuzzleGame ex = new PuzzleGame();
             ex.setVisible(true);
+            if (coop != null) {
+                ex.boardChanged(coop.getBoard());
+            }
         });
     }
 }
@@ -763,16 +1313,13 @@ class PuzzlePanel extends JPanel {
     private int level;
     private BufferedImage borderImage;
     private BufferedImage backgroundImage; // Background image
+    private BufferedImage scaledBorderImage; // Scaled once, not on every paint
 
-    public PuzzlePanel(int level, BufferedImage borderImage) {
+    public PuzzlePanel(int level, BufferedImage borderImage, BufferedImage backgroundImage) {
         super(true); // Enable double buffering by passing true to the JPanel constructor
         this.level = level;
         this.borderImage = borderImage;
-        try {
-            backgroundImage = ImageIO.read(getClass().getResource("/images/background.png"));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        this.backgroundImage = backgroundImage;
     }
 
     public void setLevel(int level) {
@@ -790,8 +1337,10 @@ class PuzzlePanel extends JPanel {
 
         int gridSize = (int) Math.sqrt(level);
         int cellSize = 400 / gridSize;
-        int offset = (Toolkit.getDefaultToolkit().getScreenSize().width - 400) / 2;
-        int verticalOffset = (Toolkit.getDefaultToolkit().getScreenSize().height - 450) / 2;
+        Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
+        Point origin = PuzzleRules.boardOrigin(screen.width, screen.height);
+        int offset = origin.x;
+        int verticalOffset = origin.y;
         for (int i = 0; i < gridSize; i++) {
             for (int j = 0; j < gridSize; j++) {
                 g.drawRect(offset + i * cellSize, verticalOffset + j * cellSize, cellSize, cellSize);
@@ -806,14 +1355,20 @@ class PuzzlePanel extends JPanel {
         int newHeight = (int) (700);
 
         // Scale the image to the new size
-        Image scaledImage = borderImage.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH);
+        if (scaledBorderImage == null) {
+            Image scaled = new ImageIcon(borderImage.getScaledInstance(newWidth, newHeight, Image.SCALE_SMOOTH)).getImage();
+            scaledBorderImage = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = scaledBorderImage.createGraphics();
+            g2.drawImage(scaled, 0, 0, null);
+            g2.dispose();
+        }
 
         // Calculate the new x and y coordinates to center the image
         int newX = borderX - (newWidth - 400) / 2;
         int newY = borderY - (newHeight - 400) / 2;
 
         // Draw the scaled image at the new position
-        g.drawImage(scaledImage, newX, newY, null);
+        g.drawImage(scaledBorderImage, newX, newY, null);
     }
      private void drawPiece(Graphics g, JLabel piece) {
         // Draw only the piece that has moved
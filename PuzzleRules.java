@@ -0,0 +1,119 @@
+/**
+
+ * File: PuzzleRules.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The game rules without any Swing in them, shared by the game window and the
+ * headless auto-play runner.
+ */
+final class PuzzleRules {
+    static final int[] LEVEL_PIECES = {4, 9, 16, 25};
+    static final int SNAP_DISTANCE = 50;
+    static final int START_SPACING = 40; // The space between the pieces before they are placed
+    static final int BOARD_SIZE = 400; // The picture is scaled to a square of this size
+
+    private PuzzleRules() {
+    }
+
+    public static int piecesForLevel(int level) {
+        return LEVEL_PIECES[level - 1];
+    }
+
+    public static int timeForLevel(int level) {
+        return 60 + level * 20;
+    }
+
+    public static int highScoreAfter(int level, int highScore) {
+        return level > highScore ? level * 3 : highScore;
+    }
+
+    public static int levelAfterSolving(int level) {
+        return level + 1;
+    }
+
+    /** Running out of time sends the player back to the first level. */
+    public static int levelAfterTimeout(int level) {
+        return 1;
+    }
+
+    /** True once the last level has been solved. */
+    public static boolean isGameCompleted(int level) {
+        return level > LEVEL_PIECES.length;
+    }
+
+    /** The top-left corner of the board on a screen of the given size. */
+    public static Point boardOrigin(int screenWidth, int screenHeight) {
+        return new Point((screenWidth - BOARD_SIZE) / 2, (screenHeight - 450) / 2);
+    }
+
+    /** The top of the area the pieces are laid out in before they are placed. */
+    public static int startAreaTop(int screenHeight) {
+        return (screenHeight - BOARD_SIZE) / 2;
+    }
+
+    /**
+     * Where every piece of a level belongs, in row-major order. Jigsaw pieces
+     * are drawn with padding around their cell for the tabs, so their images
+     * sit up and to the left of the cell by that much.
+     */
+    public static Point[] correctPositions(int level, Point origin, int padding) {
+        int count = piecesForLevel(level);
+        int piecesPerRow = (int) Math.sqrt(count);
+        int pieceSize = BOARD_SIZE / piecesPerRow;
+        Point[] positions = new Point[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = new Point(origin.x + pieceSize * (i % piecesPerRow) - padding,
+                                     origin.y + pieceSize * (i / piecesPerRow) - padding);
+        }
+        return positions;
+    }
+
+    /** Lays the pieces out in rows on the left of the board and shuffles them. */
+    public static List<Point> shuffledStartPositions(int count, int verticalOffset, Random random) {
+        List<Point> positions = new ArrayList<>(count);
+        int piecesPerRow = (int) Math.ceil(Math.sqrt(count));
+        for (int i = 0; i < count; i++) {
+            int x = (i % piecesPerRow) * (START_SPACING + 60);
+            int y = (i / piecesPerRow) * (START_SPACING + 60);
+            positions.add(new Point(START_SPACING + x, verticalOffset + y));
+        }
+        Collections.shuffle(positions, random);
+        return positions;
+    }
+
+    /**
+     * Returns the slot a piece dropped at (x, y) snaps into, or -1 if it is
+     * not close enough to any of them.
+     */
+    public static int findSnapSlot(int x, int y, Point[] correctPositions) {
+        for (int slot = 0; slot < correctPositions.length; slot++) {
+            int dx = Math.abs(x - correctPositions[slot].x);
+            int dy = Math.abs(y - correctPositions[slot].y);
+            if (dx < SNAP_DISTANCE && dy < SNAP_DISTANCE) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    public static boolean isSolved(Point[] positions, Point[] correctPositions) {
+        for (int i = 0; i < positions.length; i++) {
+            if (!positions[i].equals(correctPositions[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
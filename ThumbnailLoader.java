@@ -0,0 +1,212 @@
+/**
+
+ * File: ThumbnailLoader.java
+
+ * Date: 10/19/2026
+
+ */
+
+
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.ImageIcon;
+import javax.swing.JList;
+import javax.swing.ListModel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes thumbnails for the cells of a list in the background. Only cells
+ * that are painted ask for a thumbnail, loads for cells that scrolled out of
+ * view are cancelled, and decoded thumbnails are kept in a bounded LRU cache.
+ * When the list model reports an element as changed, its thumbnail is dropped
+ * and decoded again on the next paint. Everything except the decoding itself runs on the event dispatch thread.
+ */
+class ThumbnailLoader {
+    private static final ImageIcon UNREADABLE = new ImageIcon(new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+
+    private final JList<PuzzleGame.ImageOption> list;
+    private final int size;
+    private final ExecutorService decoder;
+    private final Map<PuzzleGame.ImageOption, ImageIcon> cache;
+    private final Map<PuzzleGame.ImageOption, Request> pending = new LinkedHashMap<>();
+    private final ListModel<PuzzleGame.ImageOption> model;
+    private final ListDataListener changes = new ListDataListener() {
+        @Override
+        public void contentsChanged(ListDataEvent e) {
+            for (int i = Math.max(0, e.getIndex0()); i <= e.getIndex1() && i < model.getSize(); i++) {
+                evict(model.getElementAt(i));
+            }
+        }
+
+        @Override
+        public void intervalAdded(ListDataEvent e) {
+        }
+
+        @Override
+        public void intervalRemoved(ListDataEvent e) {
+        }
+    };
+
+    public ThumbnailLoader(JList<PuzzleGame.ImageOption> list, int size, int capacity) {
+        this.list = list;
+        this.size = size;
+        cache = new LinkedHashMap<PuzzleGame.ImageOption, ImageIcon>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PuzzleGame.ImageOption, ImageIcon> eldest) {
+                return size() > capacity;
+            }
+        };
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        decoder = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        model = list.getModel();
+        model.addListDataListener(changes);
+    }
+
+    /**
+     * Returns the thumbnail if it is ready, otherwise starts decoding it for
+     * the cell at index and returns null.
+     */
+    public ImageIcon getThumbnail(PuzzleGame.ImageOption option, int index) {
+        ImageIcon icon = cache.get(option);
+        if (icon == null && !pending.containsKey(option)) {
+            File file = new File(option.getFile());
+            Request request = new Request(index);
+            pending.put(option, request);
+            request.future = decoder.submit(() -> {
+                BufferedImage thumbnail = null;
+                try {
+                    thumbnail = decode(file);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Could not read " + file + ": " + e.getMessage());
+                }
+                BufferedImage result = thumbnail;
+                SwingUtilities.invokeLater(() -> loaded(option, request, result));
+            });
+        }
+        return icon;
+    }
+
+    /** Cancels every load for a cell outside first..last. */
+    public void cancelOutside(int first, int last) {
+        Iterator<Request> requests = pending.values().iterator();
+        while (requests.hasNext()) {
+            Request request = requests.next();
+            if (request.index < first || request.index > last) {
+                request.future.cancel(true);
+                requests.remove();
+            }
+        }
+    }
+
+    /**
+     * Forgets the thumbnail of an image whose file changed, including one
+     * that is still being decoded from the old contents.
+     */
+    public void evict(PuzzleGame.ImageOption option) {
+        cache.remove(option);
+        Request request = pending.remove(option);
+        if (request != null) {
+            request.future.cancel(true);
+        }
+    }
+
+    public void shutdown() {
+        model.removeListDataListener(changes);
+        decoder.shutdownNow();
+        pending.clear();
+        cache.clear();
+    }
+
+    private void loaded(PuzzleGame.ImageOption option, Request request, BufferedImage thumbnail) {
+        if (pending.get(option) != request) {
+            return; // Cancelled while the result was on its way
+        }
+        pending.remove(option);
+        // Unreadable files get an empty icon so they are not tried on every paint
+        cache.put(option, thumbnail != null ? new ImageIcon(thumbnail) : UNREADABLE);
+        int index = request.index < model.getSize() && model.getElementAt(request.index) == option
+            ? request.index : -1;
+        Rectangle bounds = index >= 0 ? list.getCellBounds(index, index) : null;
+        if (bounds != null) {
+            list.repaint(bounds);
+        } else {
+            list.repaint();
+        }
+    }
+
+    private BufferedImage decode(File file) throws IOException {
+        BufferedImage image = readSubsampled(file, size);
+        return image != null ? fit(image) : null;
+    }
+
+    /**
+     * Reads a copy of an image whose shorter side is still at least twice
+     * minSize, so a large photo never has to be decoded in full. Returns null
+     * if no reader understands the file or the thread was interrupted.
+     */
+    static BufferedImage readSubsampled(File file, int minSize) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                int step = Math.max(1, Math.min(width, height) / (2 * minSize));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                if (Thread.currentThread().isInterrupted()) {
+                    return null;
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage fit(BufferedImage image) {
+        double scale = Math.min((double) size / image.getWidth(), (double) size / image.getHeight());
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = thumbnail.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(image, 0, 0, width, height, null);
+        g2.dispose();
+        return thumbnail;
+    }
+
+    private static class Request {
+        private final int index;
+        private Future<?> future;
+
+        Request(int index) {
+            this.index = index;
+        }
+    }
+}